@@ -6,16 +6,117 @@ Vertices (V): 429
 Edges (E): 578
 Edge weight: Length of road segment in meters
 
+Stored either as adjacency linked lists or as Compressed Sparse Rows (default)
+
 */
 
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
 import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Scanner;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.*;
+
+
+/*
+ * Trace levels consulted by MST_Prim and SPT_Dijkstra:
+ *    OFF     - nothing is printed, no strings are built, only the result object is returned
+ *    SUMMARY - the final totals and the tree are printed
+ *    FULL    - every heap pop also prints the dist[], hPos[] and parent[] arrays
+ */
+enum Trace {OFF, SUMMARY, FULL};
+
+
+/*
+ * Result of Prim's algorithm, returned by MST_Prim
+ */
+class MSTResult {
+    // vertex the tree was grown from
+    final int root;
+
+    // parent[v] = vertex that connects v to the MST, 0 for the root and unreached vertices
+    final int[] parent;
+
+    // total length in meters of the road segments in the MST
+    final int weight;
+
+    // number of edges in the MST
+    final int edges;
+
+    // roots[i] and treeWeights[i] in meters for every tree, more than one tree only in forest mode
+    final int[] roots;
+    final int[] treeWeights;
+
+    public MSTResult(int root, int[] parent, int weight, int edges) {
+        this(root, parent, weight, edges, new int[] {root}, new int[] {weight});
+    }
+
+    public MSTResult(int root, int[] parent, int weight, int edges, int[] roots, int[] treeWeights) {
+        this.root = root;
+        this.parent = parent;
+        this.weight = weight;
+        this.edges = edges;
+        this.roots = roots;
+        this.treeWeights = treeWeights;
+    }
+}
+
+
+/*
+ * Result of Dijkstra's algorithm, returned by SPT_Dijkstra
+ */
+class SPTResult {
+    // source vertex of the shortest path tree
+    final int source;
+
+    // dist[v] = length in meters of the shortest path from source to v, Integer.MAX_VALUE if not reachable
+    final int[] dist;
+
+    // parent[v] = predecessor of v on the shortest path, 0 for the source and unreachable vertices
+    final int[] parent;
+
+    // number of edges in the shortest path tree
+    final int edges;
+
+    // roots[i] and the total length in meters of the tree's road segments treeWeights[i] for every
+    // tree, more than one tree only in forest mode, where dist[] is from the root of each tree
+    final int[] roots;
+    final int[] treeWeights;
+
+    public SPTResult(int source, int[] dist, int[] parent, int edges) {
+        this(source, dist, parent, edges, new int[] {source}, new int[] {0});
+    }
+
+    public SPTResult(int source, int[] dist, int[] parent, int edges, int[] roots, int[] treeWeights) {
+        this.source = source;
+        this.dist = dist;
+        this.parent = parent;
+        this.edges = edges;
+        this.roots = roots;
+        this.treeWeights = treeWeights;
+    }
+}
 
 
 /*
  * Implementation of Min Heap
  */
-class Heap {
+class Heap implements VertexQueue {
     // heap array
     private int[] a;	
     
@@ -27,6 +128,9 @@ class Heap {
 
     // heap size
     private int N;      
+
+    // siftUp/siftDown add the levels they move to counters.swaps while metrics are enabled
+    private QueryCounters counters;
    
     // The heap constructor gets passed from the Graph:
     //    1. maximum heap size
@@ -52,12 +156,34 @@ class Heap {
     }
 
 
+    // priority of v was lowered, move it up from its current position
+    public void decreaseKey(int v) {
+        siftUp(hPos[v]);
+    }
+
+    // vertex with the smallest priority, without removing it
+    public int peek() {
+        return a[1];
+    }
+
+    // empty the heap so it can be reused by the next query, hPos[] is reset by the caller
+    public void clear() {
+        N = 0;
+    }
+
+    public void countSwaps(QueryCounters c) {
+        counters = c;
+    }
+
+
     /*
     * siftUp from position k. The node value at position k
     * may be greater than its parent at k/2
     * k is a position in the heap array a
     */
     public void siftUp(int k) {   
+        int start = k;
+
         // vertex on a heap after insertion (typically at the very end)
         int v = a[k];
 
@@ -82,6 +208,11 @@ class Heap {
 
         // update the position on the heap for current vertex we sifted up
         hPos[v] = k;
+
+        // each level moved up halves k, so the levels are the difference in bit length
+        if (counters != null) {
+            counters.swaps += Integer.numberOfLeadingZeros(k) - Integer.numberOfLeadingZeros(start);
+        }
     }
 
 
@@ -91,6 +222,7 @@ class Heap {
      */
     public void siftDown(int k) {
         int j;
+        int start = k;
 
         // vertex on a heap we want to sift down
         int v = a[k];
@@ -130,6 +262,10 @@ class Heap {
 
         // update the position on the heap for current vertex we sifted down
         hPos[v] = k;
+
+        if (counters != null) {
+            counters.swaps += Integer.numberOfLeadingZeros(start) - Integer.numberOfLeadingZeros(k);
+        }
     }
 
     // insert the vertex at the end of the heap
@@ -162,229 +298,5710 @@ class Heap {
 }
 
 
-class Graph {
-    class Node {
-        public int vertex;
-        public int wgt;
-        public Node next;
+/*
+ * Priority queue of vertices keyed by an external priority array, as used by SPT_Dijkstra
+ * and MST_Prim. The caller lowers priority[v] first and then calls decreaseKey(v).
+ * hPos[v] != 0 exactly while v is in the queue, so the algorithms can test membership
+ * with hPos[] whichever implementation they run on (the heaps keep v's position there).
+ */
+interface VertexQueue {
+    boolean isEmpty();
+    void insert(int v);
+    int remove();
 
-        public Node(int vertex, int wgt, Node next) {
-            this.vertex = vertex;
-            this.wgt = wgt;
-            this.next = next;
-        }
-    }
-    
-    // V = number of vertices
-    private int V;
+    // priority[v] was lowered while v is in the queue, Heap does siftUp(hPos[v])
+    void decreaseKey(int v);
 
-    // E = number of edges
-    private int E;
+    // vertex with the smallest priority, without removing it
+    int peek();
 
-    // adj[] is the adjacency list array of nodes. This is an array of linked lists.
-    private Node[] adj;
+    // empty the queue so it can be reused, hPos[] is reset by the caller
+    void clear();
 
-    // sentinel node
-    private Node z;    
-    
-    // default constructor
-    public Graph(String graphFile)  throws IOException {
-        int u, v;
-        int e;
-        int wgt;
+    // add the levels moved by siftUp/siftDown to c.swaps, queues without sifting ignore it
+    default void countSwaps(QueryCounters c) {
+    }
+}
 
-        FileReader fr = new FileReader(graphFile);
-		BufferedReader reader = new BufferedReader(fr);
-	           
-        String splits = " +";  // multiple whitespace as delimiter
-		String line = reader.readLine();        
-        String[] parts = line.split(splits);
-        System.out.println("Parts[] = " + parts[0] + " " + parts[1]);
-        
-        V = Integer.parseInt(parts[0]);
-        E = Integer.parseInt(parts[1]);
-        
-        // create sentinel node
-        z = new Node(0, 0, null); 
-        z.next = z;
-        
-        // create adjacency lists, initialised to sentinel node z       
-        adj = new Node[V+1];        
-        for(v = 1; v <= V; ++v)
-            adj[v] = z;      
-            
-       // read the edges
-        System.out.println("Reading edges from text file");
-        for(e = 1; e <= E; ++e)
-        {
-            line = reader.readLine();
-            parts = line.split(splits);
-            u = Integer.parseInt(parts[0]);
-            v = Integer.parseInt(parts[1]); 
-            wgt = Integer.parseInt(parts[2]);
-            
-            System.out.println("Edge " + u + " --(" + wgt + "m)-- " + v); 
-            
-            // insert node in front of adjacency list for vertex u
-            adj[u] = new Node(v, wgt, adj[u]);
 
-            // insert node in front of adjacency list for vertex v (since undirected)
-            adj[v] = new Node(u, wgt, adj[v]);
-        }	   
-        
-        System.out.println("\nBuilding adjacency list representation, which is very efficient for sparse graphs.");
-        reader.close();
+/*
+ * Priority queue implementations selectable for SPT_Dijkstra, MST_Prim and QueryEngine
+ *    BINARY  - the original binary Heap
+ *    DARY    - 4-ary heap, shallower and with the children of a node next to each other in memory
+ *    PAIRING - pairing heap with O(1) insert and decrease-key
+ *    RADIX   - radix heap for non-negative integer keys that never go below the last removed key,
+ *              true for Dijkstra but not for Prim's algorithm
+ *    BUCKET  - Dial's circular buckets, one per meter of the longest edge, also monotone keys only
+ */
+enum QueueKind {
+    BINARY, DARY, PAIRING, RADIX, BUCKET;
+
+    // whether keys must never go below the last removed key, so Prim's algorithm can't use it
+    boolean monotone() {
+        return this == RADIX || this == BUCKET;
     }
-   
-    
-    // method to display the graph representation
-    public void display() {
-        int v;
-        Node n;
-        
-        for(v=1; v<=V; ++v){
-            System.out.print("\nadj[" + v + "] ->" );
-            for(n = adj[v]; n != z; n = n.next) 
-                System.out.print(" |" + n.vertex + " | " + n.wgt + "| ->");    
+
+    VertexQueue create(int maxSize, int[] priority, int[] hPos) {
+        return create(maxSize, priority, hPos, Integer.MAX_VALUE);
+    }
+
+    // maxWeight is the longest edge of the graph, BUCKET is a binary Heap when it's above BucketQueue.MAX_WEIGHT
+    VertexQueue create(int maxSize, int[] priority, int[] hPos, int maxWeight) {
+        switch (this) {
+            case BUCKET:
+                if (maxWeight <= BucketQueue.MAX_WEIGHT) {
+                    return new BucketQueue(maxSize, maxWeight, priority, hPos);
+                }
+                return new Heap(maxSize, priority, hPos);
+            case DARY:
+                return new DaryHeap(4, maxSize, priority, hPos);
+            case PAIRING:
+                return new PairingHeap(maxSize, priority, hPos);
+            case RADIX:
+                return new RadixHeap(maxSize, priority, hPos);
+            default:
+                return new Heap(maxSize, priority, hPos);
         }
-        System.out.println("");
     }
+}
 
-    public void SPT_Dijkstra(int s) {
-        int v, d;
-        int totalEdgesInSpt = 0;
 
-        // Record start time
-        long startTime = System.nanoTime();
+/*
+ * d-ary min heap with the same 1-based layout and hPos[] bookkeeping as Heap.
+ * The children of position k are d * (k - 1) + 2 .. d * k + 1 and its parent is (k - 2) / d + 1.
+ */
+class DaryHeap implements VertexQueue {
+    private final int d;
+    private final int[] a;
+    private final int[] hPos;
+    private final int[] dist;
+    private int N;
 
-        // Measure memory before
-        Runtime runtime = Runtime.getRuntime();
-        runtime.gc();
-        long usedMemoryBefore = runtime.totalMemory() - runtime.freeMemory();
+    // levels moved by siftUp/siftDown go to counters.swaps while metrics are enabled
+    private QueryCounters counters;
 
-        // Stores best known distance from s to every vertex
-        int[] dist = new int[V + 1];
+    public DaryHeap(int d, int maxSize, int[] _dist, int[] _hPos) {
+        this.d = d;
+        a = new int[maxSize + 1];
+        hPos = _hPos;
+        dist = _dist;
+    }
 
-        // Stores the predecessor on the shortest path for each vertex
-        int[] parent = new int[V + 1]; 
+    public boolean isEmpty() {
+        return N == 0;
+    }
 
-        // Position of vertex in the heap
-        int[] hPos = new int[V + 1];
-        Node u;
+    private void siftUp(int k) {
+        int v = a[k];
+        int vDist = dist[v];
+        int moves = 0;
 
-        // Initialize dist, parent, and hPos arrays (1-indexed arrays)
-        for (v = 1; v <= V; ++v) {
-            dist[v] = Integer.MAX_VALUE;
-            parent[v] = 0;
-            hPos[v] = 0;
+        while (k > 1) {
+            int p = (k - 2) / d + 1;
+            if (vDist >= dist[a[p]]) {
+                break;
+            }
+            a[k] = a[p];
+            hPos[a[k]] = k;
+            k = p;
+            ++moves;
         }
-        
-        // Distance to root s is 0
-        dist[s] = 0;
-
-        Heap h =  new Heap(V, dist, hPos);
 
-        // Start from vertex s
-        h.insert(s);
-
-        System.out.println("\nStarting SPT Dijkstra's algorithm: \n");
-        System.out.println("Start from source vertex: " + s + 
-                           ", dist = " + dist[s] + 
-                           ", hPos[s] = " + hPos[s]);
-        
-        while (!h.isEmpty()) {
+        a[k] = v;
+        hPos[v] = k;
+        if (counters != null) {
+            counters.swaps += moves;
+        }
+    }
 
-            // pop the vertex with minimal distance from source from the heap
-            v = h.remove();
+    private void siftDown(int k) {
+        int v = a[k];
+        int vDist = dist[v];
+        int moves = 0;
 
-            if (v != s) {
-                ++totalEdgesInSpt;
+        while (true) {
+            int first = d * (k - 1) + 2;
+            if (first > N) {
+                break;
             }
-            
-            System.out.println("Removed from heap: " + "vertex " + v + 
-                           ", dist = " + dist[v]);
-            
-            // For each neighbor u of v
-            for (u = adj[v]; u != z; u = u.next) {
-                d = u.wgt;
-                if (dist[v] + d < dist[u.vertex]) {
-                    dist[u.vertex] = dist[v] + d;
-                    parent[u.vertex] = v;
-                
-                    // Not yet in heap
-                    if (hPos[u.vertex] == 0) {
-                        h.insert(u.vertex);
-                    } else {
-                        // if in the heap, should be sifted up since the priority was updated by new minimal weight
-                        System.out.println("Called siftUp() on vertex: " + u.vertex);
-                        h.siftUp(hPos[u.vertex]);
-                    }
+
+            // smallest of up to d children
+            int last = Math.min(first + d - 1, N);
+            int j = first;
+            for (int c = first + 1; c <= last; ++c) {
+                if (dist[a[c]] < dist[a[j]]) {
+                    j = c;
                 }
             }
 
-            System.out.print("dist[]: ");
-            for (int i = 1; i <= V; i++) System.out.print(i + "=" + (dist[i] == Integer.MAX_VALUE ? "∞" : dist[i]) + "  ");
-            System.out.println();
-
-            System.out.print("hPos[]: ");
-            for (int i = 1; i <= V; i++) System.out.print(i + "=" + hPos[i] + "  ");
-            System.out.println();
+            if (vDist <= dist[a[j]]) {
+                break;
+            }
+            a[k] = a[j];
+            hPos[a[k]] = k;
+            k = j;
+            ++moves;
+        }
 
-            System.out.print("parent[]: ");
-            for (int i = 1; i <= V; i++) System.out.print(i + "=" + parent[i] + "  ");
-            System.out.println("\n");
+        a[k] = v;
+        hPos[v] = k;
+        if (counters != null) {
+            counters.swaps += moves;
         }
+    }
+
+    public void insert(int x) {
+        a[++N] = x;
+        siftUp(N);
+    }
 
-        System.out.print("After running Dijkstra’s SPT Algorithm on Gibraltar's Roads Network: \n");
-        System.out.print("Number of vertices connected in SPT = " + V + "\n");
-        System.out.print("Number of edges in SPT = " + totalEdgesInSpt + " (should be equal to V - 1)" + "\n");
-        System.out.println("\nShortest Path Tree as it is built is:\n");
-        System.out.printf("%-8s %-8s %-20s\n", "Vertex", "Parent", "Distance from source " + s + " (m)");
+    public int remove() {
+        int v = a[1];
+        hPos[v] = 0;
 
-        for (int i = 1; i <= V; i++) {
-            System.out.printf("%-8s %-8s %-15s\n", 
-                i, 
-                (parent[i] == 0 ? "-" : parent[i]), 
-                (dist[i] == Integer.MAX_VALUE ? "∞" : dist[i] + "m"));
+        a[1] = a[N--];
+        if (!isEmpty()) {
+            hPos[a[1]] = 1;
+            siftDown(1);
         }
+        return v;
+    }
 
-        // Record end time
-        long endTime = System.nanoTime();
+    public void decreaseKey(int v) {
+        siftUp(hPos[v]);
+    }
 
-        // Measure memory after
-        long usedMemoryAfter = runtime.totalMemory() - runtime.freeMemory();
+    public int peek() {
+        return a[1];
+    }
 
-        // Calculate and print results
-        double timeInMillis = (endTime - startTime) / 1_000_000.0;
-        long memoryUsedKB = (usedMemoryAfter - usedMemoryBefore) / 1024;
+    public void clear() {
+        N = 0;
+    }
 
-        System.out.printf("\nExecution Time: %.3f ms\n", timeInMillis);
-        System.out.printf("Memory Usage: %d KB\n", memoryUsedKB);
+    public void countSwaps(QueryCounters c) {
+        counters = c;
     }
 }
 
 
-public class GibraltarRoadsNetworkGraph {
-    public static void main(String[] args) throws IOException {
-        System.out.print("Student name: Ian Miller\n");
-        System.out.print("Student number: D23124620\n");
-        Scanner scanner = new Scanner(System.in);
+/*
+ * Pairing heap: a heap-ordered multiway tree stored in arrays indexed by vertex.
+ * child[v] is the first child of v, sibling[v] the next child of the same parent and
+ * prev[v] the previous sibling (or the parent for a first child).
+ * insert and decrease-key meld a single tree with the root in O(1), remove pairs the
+ * children of the root left to right and melds the pairs back right to left.
+ */
+class PairingHeap implements VertexQueue {
+    private final int[] child;
+    private final int[] sibling;
+    private final int[] prev;
+    private final int[] hPos;
+    private final int[] dist;
 
-        // Prompt for file name
-        System.out.print("\nEnter graph file name (eg. gibraltar.txt): ");
-        String fname = scanner.nextLine();
+    // roots of the trees being paired by remove()
+    private final int[] pairs;
 
-        // Prompt for starting vertex
-        System.out.print("Enter starting vertex (as a number, e.g., 1): ");
-        int s = scanner.nextInt();
-        
-        // Load and construct graph
-        Graph g = new Graph(fname);
-        g.display();
+    private int root;
 
-        System.out.print("\nPreparing for running Dijkstra's Shortest Path Tree Algorithm on Gibraltar's Roads Network Graph \n"); 
-        System.out.print("The weight between two nodes (roads) represents the distance in meters\n"); 
-        g.SPT_Dijkstra(s);  
-        System.out.print("\nTime complexity: O(V + E log V), Space complexity: O(V + E)\n");
+    public PairingHeap(int maxSize, int[] _dist, int[] _hPos) {
+        child = new int[maxSize + 1];
+        sibling = new int[maxSize + 1];
+        prev = new int[maxSize + 1];
+        pairs = new int[maxSize + 1];
+        hPos = _hPos;
+        dist = _dist;
+    }
+
+    public boolean isEmpty() {
+        return root == 0;
+    }
+
+    // link two roots, the one with the larger priority becomes the first child of the other
+    private int meld(int x, int y) {
+        if (dist[y] < dist[x]) {
+            int t = x;
+            x = y;
+            y = t;
+        }
+
+        sibling[y] = child[x];
+        if (child[x] != 0) {
+            prev[child[x]] = y;
+        }
+        prev[y] = x;
+        child[x] = y;
+        return x;
+    }
+
+    public void insert(int v) {
+        child[v] = sibling[v] = prev[v] = 0;
+        hPos[v] = 1;
+        root = root == 0 ? v : meld(root, v);
+    }
+
+    public void decreaseKey(int v) {
+        if (v == root) {
+            return;
+        }
+
+        // cut the subtree of v out of its parent's child list and meld it with the root
+        int p = prev[v];
+        if (child[p] == v) {
+            child[p] = sibling[v];
+        } else {
+            sibling[p] = sibling[v];
+        }
+        if (sibling[v] != 0) {
+            prev[sibling[v]] = p;
+        }
+        sibling[v] = prev[v] = 0;
+
+        root = meld(root, v);
+    }
+
+    public int remove() {
+        int v = root;
+        hPos[v] = 0;
+
+        // first pass: meld the children of the root in pairs, left to right
+        int n = 0;
+        int c = child[v];
+        while (c != 0) {
+            int next = sibling[c];
+            sibling[c] = prev[c] = 0;
+
+            if (next == 0) {
+                pairs[n++] = c;
+                break;
+            }
+
+            int after = sibling[next];
+            sibling[next] = prev[next] = 0;
+            pairs[n++] = meld(c, next);
+            c = after;
+        }
+
+        // second pass: meld the pairs right to left
+        root = 0;
+        for (int i = n - 1; i >= 0; --i) {
+            root = root == 0 ? pairs[i] : meld(pairs[i], root);
+        }
+        if (root != 0) {
+            prev[root] = 0;
+        }
+
+        child[v] = 0;
+        return v;
+    }
+
+    public int peek() {
+        return root;
+    }
+
+    public void clear() {
+        root = 0;
+    }
+}
+
+
+/*
+ * Radix heap for non-negative integer keys that never drop below the last removed key
+ * (monotone, as in Dijkstra). Bucket 0 holds the keys equal to the last removed key and
+ * bucket i > 0 the keys whose highest bit differing from it is bit i - 1, so a key only ever
+ * moves to lower buckets and each vertex is moved at most 32 times.
+ * Buckets are doubly linked lists threaded through next[] and prev[] arrays indexed by vertex.
+ */
+class RadixHeap implements VertexQueue {
+    private static final int BUCKETS = 33;
+
+    private final int[] head = new int[BUCKETS];
+    private final int[] next;
+    private final int[] prev;
+    private final int[] bucketOf;
+    private final int[] hPos;
+    private final int[] dist;
+
+    // last removed key, all keys in the heap are >= last
+    private int last;
+    private int N;
+
+    public RadixHeap(int maxSize, int[] _dist, int[] _hPos) {
+        next = new int[maxSize + 1];
+        prev = new int[maxSize + 1];
+        bucketOf = new int[maxSize + 1];
+        hPos = _hPos;
+        dist = _dist;
+    }
+
+    public boolean isEmpty() {
+        return N == 0;
+    }
+
+    private int bucket(int key) {
+        if (key < last) {
+            throw new IllegalStateException("Radix heap key " + key + " is below the last removed key " + last);
+        }
+        return key == last ? 0 : 32 - Integer.numberOfLeadingZeros(key ^ last);
+    }
+
+    private void link(int v, int b) {
+        bucketOf[v] = b;
+        prev[v] = 0;
+        next[v] = head[b];
+        if (head[b] != 0) {
+            prev[head[b]] = v;
+        }
+        head[b] = v;
+    }
+
+    private void unlink(int v) {
+        int b = bucketOf[v];
+        if (prev[v] != 0) {
+            next[prev[v]] = next[v];
+        } else {
+            head[b] = next[v];
+        }
+        if (next[v] != 0) {
+            prev[next[v]] = prev[v];
+        }
+    }
+
+    public void insert(int v) {
+        hPos[v] = 1;
+        link(v, bucket(dist[v]));
+        ++N;
+    }
+
+    public void decreaseKey(int v) {
+        int b = bucket(dist[v]);
+        if (b != bucketOf[v]) {
+            unlink(v);
+            link(v, b);
+        }
+    }
+
+    // make sure bucket 0 is not empty: take the first non-empty bucket, its minimum becomes last
+    // and all its vertices move down to lower buckets
+    private void refill() {
+        if (head[0] != 0) {
+            return;
+        }
+
+        int b = 1;
+        while (head[b] == 0) {
+            ++b;
+        }
+
+        int min = Integer.MAX_VALUE;
+        for (int v = head[b]; v != 0; v = next[v]) {
+            min = Math.min(min, dist[v]);
+        }
+        last = min;
+
+        int v = head[b];
+        head[b] = 0;
+        while (v != 0) {
+            int n = next[v];
+            link(v, bucket(dist[v]));
+            v = n;
+        }
+    }
+
+    public int remove() {
+        refill();
+        int v = head[0];
+        unlink(v);
+        hPos[v] = 0;
+        --N;
+        return v;
+    }
+
+    public int peek() {
+        refill();
+        return head[0];
+    }
+
+    public void clear() {
+        java.util.Arrays.fill(head, 0);
+        last = 0;
+        N = 0;
+    }
+}
+
+
+/*
+ * Bucket queue for Dial's algorithm: integer keys that never drop below the last removed key
+ * and never exceed it by more than maxWeight, the longest edge of the graph.
+ * Then the keys in the queue fit in maxWeight + 1 circular buckets, bucket key % (maxWeight + 1),
+ * all vertices of a bucket have the same key, and remove() just walks forward to the next
+ * non-empty bucket, O(E + V * maxWeight) for the whole of Dijkstra's algorithm.
+ * Buckets are doubly linked lists threaded through next[] and prev[], hPos[v] is v's bucket + 1.
+ */
+class BucketQueue implements VertexQueue {
+    // longest edge the buckets are allocated for, heavier graphs fall back to the binary heap
+    static final int MAX_WEIGHT = 1 << 16;
+
+    private final int[] head;
+    private final int[] next;
+    private final int[] prev;
+    private final int[] hPos;
+    private final int[] dist;
+
+    // last removed key, all keys in the queue are in last .. last + head.length - 1
+    private int last;
+    private int N;
+
+    // largest key inserted since the last clear(), no bucket past it is in use
+    private int top;
+
+    public BucketQueue(int maxSize, int maxWeight, int[] _dist, int[] _hPos) {
+        head = new int[maxWeight + 1];
+        next = new int[maxSize + 1];
+        prev = new int[maxSize + 1];
+        hPos = _hPos;
+        dist = _dist;
+    }
+
+    public boolean isEmpty() {
+        return N == 0;
+    }
+
+    private int bucket(int key) {
+        if (key < last || key - last >= head.length) {
+            throw new IllegalStateException("Bucket queue key " + key + " is outside " + last + " .. " + (last + head.length - 1));
+        }
+        return key % head.length;
+    }
+
+    private void link(int v, int b) {
+        hPos[v] = b + 1;
+        prev[v] = 0;
+        next[v] = head[b];
+        if (head[b] != 0) {
+            prev[head[b]] = v;
+        }
+        head[b] = v;
+    }
+
+    private void unlink(int v) {
+        if (prev[v] != 0) {
+            next[prev[v]] = next[v];
+        } else {
+            head[hPos[v] - 1] = next[v];
+        }
+        if (next[v] != 0) {
+            prev[next[v]] = prev[v];
+        }
+    }
+
+    public void insert(int v) {
+        link(v, bucket(dist[v]));
+        top = Math.max(top, dist[v]);
+        ++N;
+    }
+
+    public void decreaseKey(int v) {
+        int b = bucket(dist[v]);
+        if (b != hPos[v] - 1) {
+            unlink(v);
+            link(v, b);
+        }
+    }
+
+    // move last forward to the key of the first non-empty bucket
+    private int advance() {
+        int b = last % head.length;
+        while (head[b] == 0) {
+            ++last;
+            b = b + 1 == head.length ? 0 : b + 1;
+        }
+        return b;
+    }
+
+    public int remove() {
+        int v = head[advance()];
+        unlink(v);
+        hPos[v] = 0;
+        --N;
+        return v;
+    }
+
+    public int peek() {
+        return head[advance()];
+    }
+
+    // empty only the buckets of keys last .. top, so a query that stopped early pays for the
+    // keys left in the queue rather than for all maxWeight + 1 buckets
+    public void clear() {
+        if (N > 0) {
+            for (int key = last; key <= top; ++key) {
+                head[key % head.length] = 0;
+            }
+        }
+        last = 0;
+        top = 0;
+        N = 0;
+    }
+}
+
+
+/*
+ * Counters of one MST_Prim, SPT_Dijkstra or QueryEngine query, filled in while metrics are enabled:
+ *    inserts, removes, decreaseKeys - priority queue operations
+ *    swaps       - levels a vertex moved in siftUp/siftDown, binary and d-ary heaps only
+ *    relaxations - road segments scanned from settled vertices
+ *    settled     - vertices whose distance (or MST edge) became final
+ * One object belongs to one query at a time, so the fields are plain longs.
+ */
+class QueryCounters {
+    long inserts;
+    long removes;
+    long decreaseKeys;
+    long swaps;
+    long relaxations;
+    long settled;
+
+    void clear() {
+        inserts = removes = decreaseKeys = swaps = relaxations = settled = 0;
+    }
+}
+
+
+/*
+ * Priority queue that counts the operations of the queue it wraps, only used while metrics are enabled
+ */
+class CountingQueue implements VertexQueue {
+    private final VertexQueue q;
+    private final QueryCounters c;
+
+    public CountingQueue(VertexQueue q, QueryCounters c) {
+        this.q = q;
+        this.c = c;
+        q.countSwaps(c);
+    }
+
+    public boolean isEmpty() {
+        return q.isEmpty();
+    }
+
+    public void insert(int v) {
+        ++c.inserts;
+        q.insert(v);
+    }
+
+    public int remove() {
+        ++c.removes;
+        return q.remove();
+    }
+
+    public void decreaseKey(int v) {
+        ++c.decreaseKeys;
+        q.decreaseKey(v);
+    }
+
+    public int peek() {
+        return q.peek();
+    }
+
+    public void clear() {
+        q.clear();
+    }
+}
+
+
+/*
+ * Totals and latency histogram of the queries run with one set of metrics, for example one
+ * per priority queue so the variants can be compared on the same traffic.
+ * Any number of threads can record into the same metrics; snapshot() gives a consistent-enough
+ * copy for reporting, and register() exports the same figures as a JMX MBean.
+ * Latencies go into log-linear buckets, 8 per power of two, so a percentile is within 12.5%.
+ */
+class QueryMetrics implements DynamicMBean {
+    private static final int SUB_BUCKETS = 8;
+    private static final int BUCKETS = SUB_BUCKETS + (63 - 3) * SUB_BUCKETS;
+
+    private static final String[] ATTRIBUTES = {
+        "Queries", "HeapInserts", "HeapRemoves", "DecreaseKeys", "SiftSwaps", "Relaxations", "SettledVertices",
+        "MeanMicros", "P50Micros", "P90Micros", "P99Micros", "MaxMicros"
+    };
+
+    final String name;
+
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder inserts = new LongAdder();
+    private final LongAdder removes = new LongAdder();
+    private final LongAdder decreaseKeys = new LongAdder();
+    private final LongAdder swaps = new LongAdder();
+    private final LongAdder relaxations = new LongAdder();
+    private final LongAdder settled = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    // latency[b] = number of queries whose time in nanoseconds falls in bucket b
+    private final AtomicLongArray latency = new AtomicLongArray(BUCKETS);
+
+    public QueryMetrics(String name) {
+        this.name = name;
+    }
+
+    // bucket of a latency: exact below 8ns, then 8 equal sub-buckets per power of two
+    static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) Math.max(0, nanos);
+        }
+        int e = 63 - Long.numberOfLeadingZeros(nanos);
+        return SUB_BUCKETS + (e - 3) * SUB_BUCKETS + (int) ((nanos >>> (e - 3)) & (SUB_BUCKETS - 1));
+    }
+
+    // largest latency that falls in bucket b
+    static long upperBound(int b) {
+        if (b < SUB_BUCKETS) {
+            return b;
+        }
+        int e = (b - SUB_BUCKETS) / SUB_BUCKETS + 3;
+        long lower = (long) (SUB_BUCKETS + (b - SUB_BUCKETS) % SUB_BUCKETS) << (e - 3);
+        return lower + (1L << (e - 3)) - 1;
+    }
+
+    // add the counters of a finished query and clear them for the next one
+    public void record(QueryCounters c, long nanos) {
+        queries.increment();
+        inserts.add(c.inserts);
+        removes.add(c.removes);
+        decreaseKeys.add(c.decreaseKeys);
+        swaps.add(c.swaps);
+        relaxations.add(c.relaxations);
+        settled.add(c.settled);
+        totalNanos.add(nanos);
+        latency.incrementAndGet(bucket(nanos));
+        c.clear();
+    }
+
+    public MetricsSnapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        for (int b = 0; b < BUCKETS; ++b) {
+            counts[b] = latency.get(b);
+        }
+        return new MetricsSnapshot(name, queries.sum(), inserts.sum(), removes.sum(), decreaseKeys.sum(),
+                                   swaps.sum(), relaxations.sum(), settled.sum(), totalNanos.sum(), counts);
+    }
+
+    public void reset() {
+        queries.reset();
+        inserts.reset();
+        removes.reset();
+        decreaseKeys.reset();
+        swaps.reset();
+        relaxations.reset();
+        settled.reset();
+        totalNanos.reset();
+        for (int b = 0; b < BUCKETS; ++b) {
+            latency.set(b, 0);
+        }
+    }
+
+    // export as GibraltarRoads:type=QueryMetrics,name=<name> on the platform MBean server, e.g. for jconsole
+    public void register() throws JMException {
+        ManagementFactory.getPlatformMBeanServer()
+            .registerMBean(this, new ObjectName("GibraltarRoads:type=QueryMetrics,name=" + name));
+    }
+
+    /*
+     * DynamicMBean: the figures of a fresh snapshot as read-only attributes, plus a reset operation.
+     * A standard MBean would need a public interface, which this single-file program can't declare.
+     */
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        MetricsSnapshot s = snapshot();
+        switch (attribute) {
+            case "Queries":         return s.queries;
+            case "HeapInserts":     return s.inserts;
+            case "HeapRemoves":     return s.removes;
+            case "DecreaseKeys":    return s.decreaseKeys;
+            case "SiftSwaps":       return s.swaps;
+            case "Relaxations":     return s.relaxations;
+            case "SettledVertices": return s.settled;
+            case "MeanMicros":      return s.meanMicros();
+            case "P50Micros":       return s.percentileMicros(50);
+            case "P90Micros":       return s.percentileMicros(90);
+            case "P99Micros":       return s.percentileMicros(99);
+            case "MaxMicros":       return s.percentileMicros(100);
+            default: throw new AttributeNotFoundException(attribute);
+        }
+    }
+
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String a : attributes) {
+            try {
+                list.add(new Attribute(a, getAttribute(a)));
+            } catch (AttributeNotFoundException e) {
+                // unknown attributes are left out, as the DynamicMBean contract allows
+            }
+        }
+        return list;
+    }
+
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+    }
+
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    public Object invoke(String action, Object[] params, String[] signature) throws ReflectionException {
+        if (action.equals("reset")) {
+            reset();
+            return null;
+        }
+        throw new ReflectionException(new NoSuchMethodException(action));
+    }
+
+    public MBeanInfo getMBeanInfo() {
+        MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[ATTRIBUTES.length];
+        for (int i = 0; i < ATTRIBUTES.length; ++i) {
+            String type = ATTRIBUTES[i].endsWith("Micros") ? "double" : "long";
+            attributes[i] = new MBeanAttributeInfo(ATTRIBUTES[i], type, ATTRIBUTES[i], true, false, false);
+        }
+        MBeanOperationInfo[] operations = {
+            new MBeanOperationInfo("reset", "Clear all counters and the latency histogram",
+                                                    new MBeanParameterInfo[0], "void",
+                                                    MBeanOperationInfo.ACTION)
+        };
+        return new MBeanInfo(getClass().getName(), "Query counters and latencies of " + name,
+                                              attributes, null, operations, null);
+    }
+}
+
+
+/*
+ * Copy of the figures of a QueryMetrics at one moment
+ */
+class MetricsSnapshot {
+    final String name;
+    final long queries;
+    final long inserts;
+    final long removes;
+    final long decreaseKeys;
+    final long swaps;
+    final long relaxations;
+    final long settled;
+    final long totalNanos;
+
+    // latency histogram, see QueryMetrics.bucket()
+    private final long[] counts;
+
+    MetricsSnapshot(String name, long queries, long inserts, long removes, long decreaseKeys, long swaps,
+                    long relaxations, long settled, long totalNanos, long[] counts) {
+        this.name = name;
+        this.queries = queries;
+        this.inserts = inserts;
+        this.removes = removes;
+        this.decreaseKeys = decreaseKeys;
+        this.swaps = swaps;
+        this.relaxations = relaxations;
+        this.settled = settled;
+        this.totalNanos = totalNanos;
+        this.counts = counts;
+    }
+
+    public double meanMicros() {
+        return queries == 0 ? 0 : totalNanos / 1e3 / queries;
+    }
+
+    // latency in microseconds that p percent of the queries did not exceed, p = 100 gives the maximum
+    public double percentileMicros(double p) {
+        long total = 0;
+        for (long n : counts) {
+            total += n;
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(p / 100 * total));
+        long seen = 0;
+        for (int b = 0; b < counts.length; ++b) {
+            seen += counts[b];
+            if (seen >= rank) {
+                return QueryMetrics.upperBound(b) / 1e3;
+            }
+        }
+        return QueryMetrics.upperBound(counts.length - 1) / 1e3;
+    }
+
+    public String toString() {
+        double q = Math.max(1, queries);
+        return String.format("%s: %d queries, per query %.1f inserts, %.1f removes, %.1f decrease-keys, %.1f sift swaps, " +
+                             "%.1f relaxations, %.1f settled, latency mean %.1f us p50 %.1f us p90 %.1f us p99 %.1f us max %.1f us",
+                             name, queries, inserts / q, removes / q, decreaseKeys / q, swaps / q, relaxations / q, settled / q,
+                             meanMicros(), percentileMicros(50), percentileMicros(90), percentileMicros(99), percentileMicros(100));
+    }
+}
+
+
+/*
+ * Common interface of the graph representations, so the adjacency linked lists
+ * and the CSR arrays run the same algorithms and can be benchmarked side by side
+ */
+interface WeightedGraph {
+    void display();
+    MSTResult MST_Prim(int s);
+    SPTResult SPT_Dijkstra(int s);
+    void setTrace(Trace trace);
+    void setQueue(QueueKind queueKind);
+    void setMetrics(QueryMetrics metrics);
+    void setForest(Components components);
+}
+
+
+class Graph implements WeightedGraph {
+    class Node {
+        public int vertex;
+        public int wgt;
+        public Node next;
+
+        public Node(int vertex, int wgt, Node next) {
+            this.vertex = vertex;
+            this.wgt = wgt;
+            this.next = next;
+        }
+    }
+    
+    // V = number of vertices
+    private int V;
+
+    // E = number of edges
+    private int E;
+
+    // adj[] is the adjacency list array of nodes. This is an array of linked lists.
+    private Node[] adj;
+
+    // sentinel node
+    private Node z;    
+
+    // length in meters of the longest road segment, sizes the buckets of Dial's algorithm
+    private int maxWeight;
+
+    // how much of MST_Prim and SPT_Dijkstra progress gets printed
+    private Trace trace = Trace.FULL;
+
+    // priority queue used by MST_Prim and SPT_Dijkstra
+    private QueueKind queueKind = QueueKind.BINARY;
+
+    // MST_Prim and SPT_Dijkstra record their counters and latency here, null when disabled
+    private QueryMetrics metrics;
+
+    // forest mode: components of the graph, MST_Prim and SPT_Dijkstra grow one tree in each of them
+    private Components components;
+
+    // shortest path trees repaired after every edge update, see track()
+    private final java.util.List<DynamicSPT> trees = new java.util.ArrayList<>();
+    
+    // default constructor
+    public Graph(String graphFile)  throws IOException {
+        int u, v;
+        int e;
+        int wgt;
+
+        FileReader fr = new FileReader(graphFile);
+		BufferedReader reader = new BufferedReader(fr);
+	           
+        String splits = " +";  // multiple whitespace as delimiter
+		String line = reader.readLine();        
+        String[] parts = line.split(splits);
+        System.out.println("Parts[] = " + parts[0] + " " + parts[1]);
+        
+        V = Integer.parseInt(parts[0]);
+        E = Integer.parseInt(parts[1]);
+        
+        // create sentinel node
+        z = new Node(0, 0, null); 
+        z.next = z;
+        
+        // create adjacency lists, initialised to sentinel node z       
+        adj = new Node[V+1];        
+        for(v = 1; v <= V; ++v)
+            adj[v] = z;      
+            
+       // read the edges
+        System.out.println("Reading edges from text file");
+        for(e = 1; e <= E; ++e)
+        {
+            line = reader.readLine();
+            parts = line.split(splits);
+            u = Integer.parseInt(parts[0]);
+            v = Integer.parseInt(parts[1]); 
+            wgt = Integer.parseInt(parts[2]);
+            
+            System.out.println("Edge " + u + " --(" + wgt + "m)-- " + v); 
+
+            maxWeight = Math.max(maxWeight, wgt);
+            
+            // insert node in front of adjacency list for vertex u
+            adj[u] = new Node(v, wgt, adj[u]);
+
+            // insert node in front of adjacency list for vertex v (since undirected)
+            adj[v] = new Node(u, wgt, adj[v]);
+        }	   
+        
+        System.out.println("\nBuilding adjacency list representation, which is very efficient for sparse graphs.");
+        reader.close();
+    }
+   
+    
+    // choose how much of MST_Prim and SPT_Dijkstra progress gets printed
+    public void setTrace(Trace trace) {
+        this.trace = trace;
+    }
+
+    // choose the priority queue used by MST_Prim and SPT_Dijkstra
+    public void setQueue(QueueKind queueKind) {
+        this.queueKind = queueKind;
+    }
+
+    // record the counters and latency of every MST_Prim and SPT_Dijkstra call, null to stop
+    public void setMetrics(QueryMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // span every connected component in MST_Prim and SPT_Dijkstra, null for the tree of the start vertex only
+    public void setForest(Components components) {
+        if (components != null && components.vertices() != V) {
+            throw new IllegalArgumentException("Components of " + components.vertices() + " vertices, not " + V);
+        }
+        this.components = components;
+    }
+
+    // method to display the graph representation
+    public void display() {
+        int v;
+        Node n;
+        
+        for(v=1; v<=V; ++v){
+            System.out.print("\nadj[" + v + "] ->" );
+            for(n = adj[v]; n != z; n = n.next) 
+                System.out.print(" |" + n.vertex + " | " + n.wgt + "| ->");    
+        }
+        System.out.println("");
+    }
+
+    // the road segments as they are now in CSR form, e.g. to label their Components
+    public CSRGraph toCSR() {
+        int[] from = new int[E];
+        int[] to = new int[E];
+        int[] wgts = new int[E];
+        int e = 0;
+
+        // each segment once, from its lower end
+        for (int u = 1; u <= V; ++u) {
+            boolean loop = false;
+            for (Node n = adj[u]; n != z; n = n.next) {
+                // a loop u - u is listed twice in adj[u], keep every other one
+                if (n.vertex == u) {
+                    loop = !loop;
+                }
+                if (n.vertex > u || (n.vertex == u && loop)) {
+                    from[e] = u;
+                    to[e] = n.vertex;
+                    wgts[e++] = n.wgt;
+                }
+            }
+        }
+        return new CSRGraph(V, E, from, to, wgts);
+    }
+
+    public MSTResult MST_Prim(int s) {
+        int v;
+        int totalEdgesInMst = 0;
+        int wgtSum = 0;
+        int[] dist = new int[V + 1];
+        int[] parent = new int[V + 1];
+        int[] hPos = new int[V + 1];
+        Node n;
+
+        // Initialize dist, parent, and hPos arrays (1-indexed arrays)
+        for (v = 1; v <= V; ++v) {
+            dist[v] = Integer.MAX_VALUE;
+            parent[v] = 0;
+            hPos[v] = 0;
+        }
+
+        // Distance to root s is 0
+        dist[s] = 0;
+
+        // counters of this call, null while metrics are disabled
+        QueryCounters counters = metrics == null ? null : new QueryCounters();
+        long startTime = counters == null ? 0 : System.nanoTime();
+
+        // Prim's priorities are edge weights and not monotone, so the radix heap and buckets cannot be used here
+        VertexQueue h = (queueKind.monotone() ? QueueKind.BINARY : queueKind).create(V, dist, hPos);
+        if (counters != null) {
+            h = new CountingQueue(h, counters);
+        }
+
+        // Start from vertex s
+        h.insert(s);
+
+        // roots of the trees grown so far and the weight of each, more than one tree only in forest mode
+        int[] roots = new int[components == null ? 1 : components.count()];
+        int[] treeWeights = new int[roots.length];
+        int trees = 0;
+        int treeStart = 0;
+        int next = 1;
+        roots[trees++] = s;
+
+        if (trace == Trace.FULL) {
+            System.out.println("\nStarting MST Prim’s algorithm: \n");
+            System.out.println("Start from source vertex: " + s +
+                               ", dist = " + dist[s] +
+                               ", hPos[s] = " + hPos[s] +
+                               ", current total MST weight = " + wgtSum);
+        }
+
+        while (!h.isEmpty()) {
+
+            // pop the vertex with minimal weigth from the heap
+            v = h.remove();
+
+            // increase the weight sum by the priority of current vertex
+            wgtSum += dist[v];
+
+            // mark current vertex as presented in MST (set negative priority)
+            dist[v] = -dist[v];
+
+            // if we added a vertex other than a root, increase the total number of edges constructed in MST
+            if (parent[v] != 0) {
+                ++totalEdgesInMst;
+            }
+
+            if (trace == Trace.FULL) {
+                System.out.println("Removed from heap: " + "vertex " + v +
+                               ", dist = " + dist[v] + " (if priority is negative, it means vertex is already in MST)" +
+                               ", current total MST weight = " + wgtSum);
+            }
+
+            // For each neighbor u of v
+            for (n = adj[v]; n != z; n = n.next) {
+                int u = n.vertex;
+                int wgt = n.wgt;
+
+                if (counters != null) {
+                    ++counters.relaxations;
+                }
+
+                // If not presented in MST and found a road segment shorter than current vertex's weight
+                if (dist[u] > 0 && wgt < dist[u]) {
+                    dist[u] = wgt;
+                    parent[u] = v;
+
+                    // Not yet in heap
+                    if (hPos[u] == 0) {
+                        h.insert(u);
+                    } else {
+                        if (trace == Trace.FULL) {
+                            System.out.println("Called siftUp() on vertex: " + u);
+                        }
+                        h.decreaseKey(u);
+                    }
+                }
+            }
+
+            if (trace == Trace.FULL) {
+                System.out.print("dist[]: ");
+                for (int i = 1; i <= V; i++) System.out.print(i + "=" + (dist[i] == Integer.MAX_VALUE ? "∞" : dist[i]) + "  ");
+                System.out.println();
+
+                System.out.print("hPos[]: ");
+                for (int i = 1; i <= V; i++) System.out.print(i + "=" + hPos[i] + "  ");
+                System.out.println();
+
+                System.out.print("parent[]: ");
+                for (int i = 1; i <= V; i++) System.out.print(i + "=" + parent[i] + "  ");
+                System.out.println("\n");
+            }
+
+            // forest mode: when the tree is complete, grow the next one from the lowest vertex of the next component
+            if (components != null && h.isEmpty()) {
+                while (next <= V && (components.label(next) != next || components.connected(next, s))) {
+                    ++next;
+                }
+                if (next <= V) {
+                    treeWeights[trees - 1] = wgtSum - treeStart;
+                    treeStart = wgtSum;
+                    roots[trees++] = next;
+                    dist[next] = 0;
+                    h.insert(next++);
+                }
+            }
+        }
+        treeWeights[trees - 1] = wgtSum - treeStart;
+
+        if (counters != null) {
+            counters.settled = totalEdgesInMst + trees;
+            metrics.record(counters, System.nanoTime() - startTime);
+        }
+
+        if (trace != Trace.OFF) {
+            System.out.print("\nThere are " + V + " vertices and " + E + " edges in the input graph\n");
+            System.out.print("After running Prim’s MST Algorithm on Gibraltar's Roads Network: \n");
+            System.out.print("Weight of MST = " + wgtSum + "m\n");
+            System.out.print("Number of edges in MST = " + totalEdgesInMst + "\n");
+            if (trees > 1) {
+                System.out.print("Minimum spanning forest of " + trees + " trees:\n");
+                for (int i = 0; i < trees; ++i) {
+                    System.out.print("Tree rooted at " + roots[i] + ", weight = " + treeWeights[i] + "m\n");
+                }
+            }
+        }
+
+        return new MSTResult(s, parent, wgtSum, totalEdgesInMst,
+                             java.util.Arrays.copyOf(roots, trees), java.util.Arrays.copyOf(treeWeights, trees));
+    }
+
+    public SPTResult SPT_Dijkstra(int s) {
+        int v, d;
+        int totalEdgesInSpt = 0;
+
+        // counters of this call, null while metrics are disabled, see GibraltarBenchmark for timings and allocation
+        QueryCounters counters = metrics == null ? null : new QueryCounters();
+        long searchStart = counters == null ? 0 : System.nanoTime();
+
+        // Stores best known distance from s to every vertex
+        int[] dist = new int[V + 1];
+
+        // Stores the predecessor on the shortest path for each vertex
+        int[] parent = new int[V + 1]; 
+
+        // Position of vertex in the heap
+        int[] hPos = new int[V + 1];
+        Node u;
+
+        // Initialize dist, parent, and hPos arrays (1-indexed arrays)
+        for (v = 1; v <= V; ++v) {
+            dist[v] = Integer.MAX_VALUE;
+            parent[v] = 0;
+            hPos[v] = 0;
+        }
+        
+        // Distance to root s is 0
+        dist[s] = 0;
+
+        VertexQueue h = queueKind.create(V, dist, hPos, maxWeight);
+        if (trace != Trace.OFF && queueKind == QueueKind.BUCKET && !(h instanceof BucketQueue)) {
+            System.out.println("Longest road segment " + maxWeight + "m is too long for a bucket queue, using the binary heap");
+        }
+        if (counters != null) {
+            h = new CountingQueue(h, counters);
+        }
+
+        // Start from vertex s
+        h.insert(s);
+
+        // roots of the trees grown so far and the weight of each, more than one tree only in forest mode
+        int[] roots = new int[components == null ? 1 : components.count()];
+        int[] treeWeights = new int[roots.length];
+        int trees = 0;
+        int treeStart = 0;
+        int next = 1;
+        roots[trees++] = s;
+        int wgtSum = 0;
+
+        if (trace == Trace.FULL) {
+            System.out.println("\nStarting SPT Dijkstra's algorithm: \n");
+            System.out.println("Start from source vertex: " + s + 
+                               ", dist = " + dist[s] + 
+                               ", hPos[s] = " + hPos[s]);
+        }
+        
+        while (!h.isEmpty()) {
+
+            // pop the vertex with minimal distance from source from the heap
+            v = h.remove();
+
+            if (parent[v] != 0) {
+                ++totalEdgesInSpt;
+                wgtSum += dist[v] - dist[parent[v]];
+            }
+            
+            if (trace == Trace.FULL) {
+                System.out.println("Removed from heap: " + "vertex " + v + 
+                               ", dist = " + dist[v]);
+            }
+            
+            // For each neighbor u of v
+            for (u = adj[v]; u != z; u = u.next) {
+                d = u.wgt;
+
+                if (counters != null) {
+                    ++counters.relaxations;
+                }
+                if (dist[v] + d < dist[u.vertex]) {
+                    dist[u.vertex] = dist[v] + d;
+                    parent[u.vertex] = v;
+                
+                    // Not yet in heap
+                    if (hPos[u.vertex] == 0) {
+                        h.insert(u.vertex);
+                    } else {
+                        // if in the heap, should be sifted up since the priority was updated by new minimal weight
+                        if (trace == Trace.FULL) {
+                            System.out.println("Called siftUp() on vertex: " + u.vertex);
+                        }
+                        h.decreaseKey(u.vertex);
+                    }
+                }
+            }
+
+            if (trace == Trace.FULL) {
+                System.out.print("dist[]: ");
+                for (int i = 1; i <= V; i++) System.out.print(i + "=" + (dist[i] == Integer.MAX_VALUE ? "∞" : dist[i]) + "  ");
+                System.out.println();
+
+                System.out.print("hPos[]: ");
+                for (int i = 1; i <= V; i++) System.out.print(i + "=" + hPos[i] + "  ");
+                System.out.println();
+
+                System.out.print("parent[]: ");
+                for (int i = 1; i <= V; i++) System.out.print(i + "=" + parent[i] + "  ");
+                System.out.println("\n");
+            }
+
+            // forest mode: when the tree is complete, grow the next one from the lowest vertex of the next component
+            if (components != null && h.isEmpty()) {
+                while (next <= V && (components.label(next) != next || components.connected(next, s))) {
+                    ++next;
+                }
+                if (next <= V) {
+                    treeWeights[trees - 1] = wgtSum - treeStart;
+                    treeStart = wgtSum;
+                    roots[trees++] = next;
+                    dist[next] = 0;
+
+                    // the new root's distance 0 is below the last removed key, which monotone queues only accept after a clear
+                    h.clear();
+                    h.insert(next++);
+                }
+            }
+        }
+        treeWeights[trees - 1] = wgtSum - treeStart;
+
+        // recorded before any summary gets printed so only the algorithm is measured
+        if (counters != null) {
+            counters.settled = totalEdgesInSpt + trees;
+            metrics.record(counters, System.nanoTime() - searchStart);
+        }
+
+        if (trace != Trace.OFF) {
+            System.out.print("After running Dijkstra’s SPT Algorithm on Gibraltar's Roads Network: \n");
+            System.out.print("Number of vertices connected in SPT = " + (totalEdgesInSpt + trees) + "\n");
+            System.out.print("Number of edges in SPT = " + totalEdgesInSpt + " (equal to V - 1 when the graph is connected)" + "\n");
+            if (trees > 1) {
+                System.out.print("Shortest path forest of " + trees + " trees, distances are from the root of each tree:\n");
+                for (int i = 0; i < trees; ++i) {
+                    System.out.print("Tree rooted at " + roots[i] + ", weight = " + treeWeights[i] + "m\n");
+                }
+            }
+            System.out.println("\nShortest Path Tree as it is built is:\n");
+            System.out.printf("%-8s %-8s %-20s\n", "Vertex", "Parent", "Distance from source " + s + " (m)");
+
+            for (int i = 1; i <= V; i++) {
+                System.out.printf("%-8s %-8s %-15s\n", 
+                    i, 
+                    (parent[i] == 0 ? "-" : parent[i]), 
+                    (dist[i] == Integer.MAX_VALUE ? "∞" : dist[i] + "m"));
+            }
+        }
+
+        return new SPTResult(s, dist, parent, totalEdgesInSpt,
+                             java.util.Arrays.copyOf(roots, trees), java.util.Arrays.copyOf(treeWeights, trees));
+    }
+
+    /*
+     * Edge updates on the live graph, for road lengths used as travel costs that change with
+     * closures and traffic. Each undirected segment is stored as two nodes, u -> v and v -> u,
+     * so every update changes both. Between parallel segments, the first one found is changed.
+     * Every shortest path tree from track() is repaired after each update.
+     */
+
+    // change the length of the u - v road segment, returns false if there is none
+    public boolean updateEdge(int u, int v, int wgt) {
+        checkSegment(u, v, wgt);
+        Node n = find(u, v, -1);
+        if (n == null) {
+            return false;
+        }
+        int old = n.wgt;
+        n.wgt = wgt;
+        find(v, u, old).wgt = wgt;
+
+        maxWeight = Math.max(maxWeight, wgt);
+        for (DynamicSPT tree : trees) {
+            tree.edgeChanged(u, v, old, wgt);
+        }
+        return true;
+    }
+
+    // add a new u - v road segment, next to any that are already there
+    public void insertEdge(int u, int v, int wgt) {
+        checkSegment(u, v, wgt);
+        adj[u] = new Node(v, wgt, adj[u]);
+        adj[v] = new Node(u, wgt, adj[v]);
+        ++E;
+
+        maxWeight = Math.max(maxWeight, wgt);
+        for (DynamicSPT tree : trees) {
+            tree.edgeChanged(u, v, Integer.MAX_VALUE, wgt);
+        }
+    }
+
+    // remove the u - v road segment, returns false if there is none
+    public boolean deleteEdge(int u, int v) {
+        checkSegment(u, v, 0);
+        Node n = find(u, v, -1);
+        if (n == null) {
+            return false;
+        }
+        int old = n.wgt;
+        unlink(u, n);
+        unlink(v, find(v, u, old));
+        --E;
+
+        // maxWeight stays an upper bound, which is all the bucket queue needs
+        for (DynamicSPT tree : trees) {
+            tree.edgeChanged(u, v, old, Integer.MAX_VALUE);
+        }
+        return true;
+    }
+
+    // the same checks as CSRGraph.updateEdge, a negative length would also match find()'s -1
+    private void checkSegment(int u, int v, int wgt) {
+        if (u < 1 || u > V || v < 1 || v > V) {
+            throw new IllegalArgumentException("Road segment " + u + " - " + v + " is not in 1.." + V);
+        }
+        if (wgt < 0) {
+            throw new IllegalArgumentException("Road segment length " + wgt + " is negative");
+        }
+    }
+
+    // node of u's list leading to v, of length wgt unless wgt is -1, null if there is none
+    private Node find(int u, int v, int wgt) {
+        for (Node n = adj[u]; n != z; n = n.next) {
+            if (n.vertex == v && (wgt == -1 || n.wgt == wgt)) {
+                return n;
+            }
+        }
+        return null;
+    }
+
+    private void unlink(int u, Node node) {
+        if (adj[u] == node) {
+            adj[u] = node.next;
+            return;
+        }
+        Node n = adj[u];
+        while (n.next != node) {
+            n = n.next;
+        }
+        n.next = node.next;
+    }
+
+    // shortest path tree from s that is kept up to date through every later edge update
+    public DynamicSPT track(int s) {
+        DynamicSPT tree = new DynamicSPT(s);
+        trees.add(tree);
+        return tree;
+    }
+
+    // stop repairing the tree
+    public void untrack(DynamicSPT tree) {
+        trees.remove(tree);
+    }
+
+
+    /*
+     * Shortest path tree that is repaired after each edge update instead of being recomputed,
+     * in the style of Ramalingam and Reps' dynamic single source shortest paths:
+     *    shorter or new segment u - v: if it improves dist[v] (or dist[u]), Dijkstra runs from
+     *        that vertex alone and stops where distances no longer improve
+     *    longer or deleted segment:    only when it was the tree edge to v (or u) something changes,
+     *        then the subtree below that edge is the affected set; its vertices are given the best
+     *        distance through an unaffected neighbour and Dijkstra settles them among themselves
+     * Either way only the vertices whose distance can change are touched, found through the
+     * child lists of the tree. dist[], parent[] and the heap use the same layout as SPT_Dijkstra.
+     */
+    class DynamicSPT {
+        // source vertex of the tree
+        final int source;
+
+        // best distance from the source, Integer.MAX_VALUE while not reachable
+        private final int[] dist;
+
+        // predecessor on the shortest path, 0 for the source and unreachable vertices
+        private final int[] parent;
+
+        // children of each vertex in the tree, as doubly linked lists through nextChild[] and prevChild[]
+        private final int[] firstChild;
+        private final int[] nextChild;
+        private final int[] prevChild;
+
+        // position of vertex in the heap, 0 when not in the heap, between repairs always 0
+        private final int[] hPos;
+        private final Heap h;
+
+        // affected subtree of a longer or deleted tree edge
+        private final int[] affected;
+
+        // distances changed by the last repair, clearing an affected vertex counts as one
+        private int touched;
+
+        DynamicSPT(int s) {
+            source = s;
+            dist = new int[V + 1];
+            parent = new int[V + 1];
+            firstChild = new int[V + 1];
+            nextChild = new int[V + 1];
+            prevChild = new int[V + 1];
+            hPos = new int[V + 1];
+            affected = new int[V];
+            h = new Heap(V, dist, hPos);
+
+            java.util.Arrays.fill(dist, Integer.MAX_VALUE);
+            dist[s] = 0;
+            h.insert(s);
+            touched = 1;
+            settle();
+        }
+
+        public int distance(int v) {
+            return dist[v];
+        }
+
+        // distances changed by the last repair (or the first computation), a measure of its cost
+        public int touchedCount() {
+            return touched;
+        }
+
+        // copy of the current tree, in the same form SPT_Dijkstra returns
+        public SPTResult toResult() {
+            int edges = 0;
+            for (int v = 1; v <= V; ++v) {
+                if (parent[v] != 0) {
+                    ++edges;
+                }
+            }
+            return new SPTResult(source, dist.clone(), parent.clone(), edges);
+        }
+
+        // road segment u - v changed length from old to wgt, Integer.MAX_VALUE standing for no segment
+        void edgeChanged(int u, int v, int old, int wgt) {
+            touched = 0;
+            if (wgt < old) {
+                // a shorter segment can only pull one of its ends closer
+                offer(v, u, wgt);
+                offer(u, v, wgt);
+            } else if (wgt > old) {
+                // a longer segment matters only when it was the tree edge to one of its ends
+                if (parent[v] == u && dist[v] == dist[u] + old) {
+                    detach(v);
+                } else if (parent[u] == v && dist[u] == dist[v] + old) {
+                    detach(u);
+                }
+            }
+            settle();
+        }
+
+        // queue v with the distance through u, if that is shorter
+        private void offer(int v, int u, int wgt) {
+            if (dist[u] != Integer.MAX_VALUE && dist[u] + wgt < dist[v]) {
+                dist[v] = dist[u] + wgt;
+                setParent(v, u);
+                ++touched;
+
+                if (hPos[v] == 0) {
+                    h.insert(v);
+                } else {
+                    h.decreaseKey(v);
+                }
+            }
+        }
+
+        /*
+         * Every vertex in the subtree of r loses its distance, then each one that has a neighbour
+         * outside the subtree is queued with the best distance through those neighbours
+         */
+        private void detach(int r) {
+            int n = 0, top = 0;
+            affected[n++] = r;
+            while (top < n) {
+                for (int c = firstChild[affected[top++]]; c != 0; c = nextChild[c]) {
+                    affected[n++] = c;
+                }
+            }
+
+            for (int i = 0; i < n; ++i) {
+                int a = affected[i];
+                dist[a] = Integer.MAX_VALUE;
+                setParent(a, 0);
+            }
+            touched = n;
+
+            for (int i = 0; i < n; ++i) {
+                int a = affected[i];
+                for (Node x = adj[a]; x != z; x = x.next) {
+                    offer(a, x.vertex, x.wgt);
+                }
+            }
+        }
+
+        // Dijkstra from the queued vertices, only improvements are followed
+        private void settle() {
+            while (!h.isEmpty()) {
+                int v = h.remove();
+                for (Node x = adj[v]; x != z; x = x.next) {
+                    offer(x.vertex, v, x.wgt);
+                }
+            }
+        }
+
+        // move v from the child list of its parent to that of p, 0 for none
+        private void setParent(int v, int p) {
+            int old = parent[v];
+            if (old != 0) {
+                if (prevChild[v] != 0) {
+                    nextChild[prevChild[v]] = nextChild[v];
+                } else {
+                    firstChild[old] = nextChild[v];
+                }
+                if (nextChild[v] != 0) {
+                    prevChild[nextChild[v]] = prevChild[v];
+                }
+            }
+
+            parent[v] = p;
+            prevChild[v] = 0;
+            nextChild[v] = 0;
+            if (p != 0) {
+                nextChild[v] = firstChild[p];
+                if (firstChild[p] != 0) {
+                    prevChild[firstChild[p]] = v;
+                }
+                firstChild[p] = v;
+            }
+        }
+    }
+}
+
+
+/*
+ * Compressed Sparse Row (CSR) representation of the same road network.
+ * The neighbours of vertex u are targets[offsets[u]] .. targets[offsets[u + 1] - 1]
+ * with the matching road lengths in weights[], so a neighbour scan walks sequentially
+ * through three flat primitive arrays instead of chasing Node references across the heap.
+ * Each undirected road segment is stored twice (u -> v and v -> u), so targets[] has 2E entries.
+ */
+class CSRGraph implements WeightedGraph {
+    // V = number of vertices
+    final int V;
+
+    // E = number of edges
+    final int E;
+
+    // offsets[u] is the index of the first neighbour of u in targets[], offsets[V + 1] == 2E
+    final int[] offsets;
+
+    // neighbour vertices of all the vertices, grouped by source vertex
+    final int[] targets;
+
+    // weights[i] is the length in meters of the road segment to targets[i]
+    final int[] weights;
+
+    // length in meters of the longest road segment, sizes the buckets of Dial's algorithm
+    int maxWeight;
+
+    // how much of MST_Prim and SPT_Dijkstra progress gets printed
+    private Trace trace = Trace.FULL;
+
+    // priority queue used by MST_Prim and SPT_Dijkstra
+    private QueueKind queueKind = QueueKind.BINARY;
+
+    // MST_Prim and SPT_Dijkstra record their counters and latency here, null when disabled
+    private QueryMetrics metrics;
+
+    // forest mode: components of the graph, MST_Prim and SPT_Dijkstra grow one tree in each of them
+    private Components components;
+
+    // caches of shortest path trees over this graph, each one is told about every edge update
+    private final java.util.List<SPTCache> caches = new java.util.concurrent.CopyOnWriteArrayList<>();
+
+
+    // default constructor, reads the same edge list file format as Graph
+    public CSRGraph(String graphFile) throws IOException {
+        int u, v;
+        int e;
+        int wgt;
+
+        FileReader fr = new FileReader(graphFile);
+        BufferedReader reader = new BufferedReader(fr);
+
+        String splits = " +";  // multiple whitespace as delimiter
+        String line = reader.readLine();
+        String[] parts = line.split(splits);
+        System.out.println("Parts[] = " + parts[0] + " " + parts[1]);
+
+        V = Integer.parseInt(parts[0]);
+        E = Integer.parseInt(parts[1]);
+
+        // edge list as it is read from the file, converted into CSR once all edges are known
+        int[] from = new int[E];
+        int[] to = new int[E];
+        int[] wgts = new int[E];
+
+        // read the edges
+        System.out.println("Reading edges from text file");
+        for (e = 0; e < E; ++e) {
+            line = reader.readLine();
+            parts = line.split(splits);
+            u = Integer.parseInt(parts[0]);
+            v = Integer.parseInt(parts[1]);
+            wgt = Integer.parseInt(parts[2]);
+
+            System.out.println("Edge " + u + " --(" + wgt + "m)-- " + v);
+
+            from[e] = u;
+            to[e] = v;
+            wgts[e] = wgt;
+        }
+        reader.close();
+
+        offsets = new int[V + 2];
+        targets = new int[2 * E];
+        weights = new int[2 * E];
+        buildRows(from, to, wgts);
+        maxWeight = maxOf(weights);
+
+        System.out.println("\nBuilding Compressed Sparse Row representation, neighbours are stored in flat arrays.");
+    }
+
+    // builds the CSR rows from an edge list already held in memory, used by EdgeListLoader
+    CSRGraph(int V, int E, int[] from, int[] to, int[] wgts) {
+        this.V = V;
+        this.E = E;
+
+        offsets = new int[V + 2];
+        targets = new int[2 * E];
+        weights = new int[2 * E];
+        buildRows(from, to, wgts);
+        maxWeight = maxOf(weights);
+    }
+
+    // wraps CSR arrays that were already built, used by GraphSnapshot
+    CSRGraph(int[] offsets, int[] targets, int[] weights) {
+        this.V = offsets.length - 2;
+        this.E = targets.length / 2;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.maxWeight = maxOf(weights);
+    }
+
+    private static int maxOf(int[] a) {
+        int max = 0;
+        for (int x : a) {
+            max = Math.max(max, x);
+        }
+        return max;
+    }
+
+    /*
+     * Counting sort of the edge list by source vertex:
+     *    1. count the degree of every vertex
+     *    2. prefix sums of the degrees give the start of each row
+     *    3. place every edge twice (since undirected)
+     * Rows are filled from the back, so the neighbours come out in the same order
+     * as in the adjacency linked lists (most recently read edge first) and both
+     * representations produce identical shortest path trees.
+     */
+    private void buildRows(int[] from, int[] to, int[] wgts) {
+        int u, v, e;
+
+        for (e = 0; e < E; ++e) {
+            ++offsets[from[e] + 1];
+            ++offsets[to[e] + 1];
+        }
+
+        for (u = 1; u <= V + 1; ++u) {
+            offsets[u] += offsets[u - 1];
+        }
+
+        // next free slot of each row, counting down from the end of the row
+        int[] pos = new int[V + 1];
+        for (u = 1; u <= V; ++u) {
+            pos[u] = offsets[u + 1];
+        }
+
+        for (e = 0; e < E; ++e) {
+            u = from[e];
+            v = to[e];
+
+            targets[--pos[u]] = v;
+            weights[pos[u]] = wgts[e];
+
+            targets[--pos[v]] = u;
+            weights[pos[v]] = wgts[e];
+        }
+    }
+
+    // choose how much of MST_Prim and SPT_Dijkstra progress gets printed
+    public void setTrace(Trace trace) {
+        this.trace = trace;
+    }
+
+    // choose the priority queue used by MST_Prim and SPT_Dijkstra
+    public void setQueue(QueueKind queueKind) {
+        this.queueKind = queueKind;
+    }
+
+    // record the counters and latency of every MST_Prim and SPT_Dijkstra call, null to stop
+    public void setMetrics(QueryMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // span every connected component in MST_Prim and SPT_Dijkstra, null for the tree of the start vertex only
+    public void setForest(Components components) {
+        if (components != null && components.vertices() != V) {
+            throw new IllegalArgumentException("Components of " + components.vertices() + " vertices, not " + V);
+        }
+        this.components = components;
+    }
+
+    /*
+     * Change the length of the u - v road segment in place, in both of its rows, and tell every
+     * SPTCache over this graph. Returns the old length, or -1 if there is no such segment.
+     * Between parallel segments the first one found is changed. The rows have a fixed size,
+     * so segments can only change length here; Graph also inserts and deletes them.
+     * No search may run on the graph during the update, RoutingServer holds its write lock.
+     * Components stay valid, but landmarks, contraction hierarchies and DeltaStepping copy the
+     * lengths when they are built and have to be built again.
+     */
+    public int updateEdge(int u, int v, int wgt) {
+        if (u < 1 || u > V || v < 1 || v > V) {
+            throw new IllegalArgumentException("Road segment " + u + " - " + v + " is not in 1.." + V);
+        }
+        if (wgt < 0) {
+            throw new IllegalArgumentException("Road segment length " + wgt + " is negative");
+        }
+
+        int i = find(u, v, -1);
+        if (i < 0) {
+            return -1;
+        }
+        int old = weights[i];
+        weights[i] = wgt;
+        weights[find(v, u, old)] = wgt;
+
+        // queues sized before this update keep their old number of buckets
+        maxWeight = Math.max(maxWeight, wgt);
+        for (SPTCache cache : caches) {
+            cache.edgeChanged(u, v, old, wgt);
+        }
+        return old;
+    }
+
+    // index in targets[] of the segment from u to v, of length wgt unless wgt is -1, -1 if there is none
+    private int find(int u, int v, int wgt) {
+        for (int i = offsets[u]; i < offsets[u + 1]; ++i) {
+            if (targets[i] == v && (wgt == -1 || weights[i] == wgt)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // the cache is told about every later updateEdge
+    void addCache(SPTCache cache) {
+        caches.add(cache);
+    }
+
+    void removeCache(SPTCache cache) {
+        caches.remove(cache);
+    }
+
+    // method to display the graph representation
+    public void display() {
+        for (int v = 1; v <= V; ++v) {
+            System.out.print("\nrow[" + v + "] ->");
+            for (int i = offsets[v]; i < offsets[v + 1]; ++i)
+                System.out.print(" |" + targets[i] + " | " + weights[i] + "| ->");
+        }
+        System.out.println("");
+    }
+
+    public MSTResult MST_Prim(int s) {
+        int v;
+        int totalEdgesInMst = 0;
+        int wgtSum = 0;
+        int[] dist = new int[V + 1];
+        int[] parent = new int[V + 1];
+        int[] hPos = new int[V + 1];
+
+        // Initialize dist, parent, and hPos arrays (1-indexed arrays)
+        for (v = 1; v <= V; ++v) {
+            dist[v] = Integer.MAX_VALUE;
+            parent[v] = 0;
+            hPos[v] = 0;
+        }
+
+        // Distance to root s is 0
+        dist[s] = 0;
+
+        // counters of this call, null while metrics are disabled
+        QueryCounters counters = metrics == null ? null : new QueryCounters();
+        long startTime = counters == null ? 0 : System.nanoTime();
+
+        // Prim's priorities are edge weights and not monotone, so the radix heap and buckets cannot be used here
+        VertexQueue h = (queueKind.monotone() ? QueueKind.BINARY : queueKind).create(V, dist, hPos);
+        if (counters != null) {
+            h = new CountingQueue(h, counters);
+        }
+
+        // Start from vertex s
+        h.insert(s);
+
+        // roots of the trees grown so far and the weight of each, more than one tree only in forest mode
+        int[] roots = new int[components == null ? 1 : components.count()];
+        int[] treeWeights = new int[roots.length];
+        int trees = 0;
+        int treeStart = 0;
+        int next = 1;
+        roots[trees++] = s;
+
+        if (trace == Trace.FULL) {
+            System.out.println("\nStarting MST Prim’s algorithm: \n");
+            System.out.println("Start from source vertex: " + s +
+                               ", dist = " + dist[s] +
+                               ", hPos[s] = " + hPos[s] +
+                               ", current total MST weight = " + wgtSum);
+        }
+
+        while (!h.isEmpty()) {
+
+            // pop the vertex with minimal weigth from the heap
+            v = h.remove();
+
+            // increase the weight sum by the priority of current vertex
+            wgtSum += dist[v];
+
+            // mark current vertex as presented in MST (set negative priority)
+            dist[v] = -dist[v];
+
+            // if we added a vertex other than a root, increase the total number of edges constructed in MST
+            if (parent[v] != 0) {
+                ++totalEdgesInMst;
+            }
+
+            if (trace == Trace.FULL) {
+                System.out.println("Removed from heap: " + "vertex " + v +
+                               ", dist = " + dist[v] + " (if priority is negative, it means vertex is already in MST)" +
+                               ", current total MST weight = " + wgtSum);
+            }
+
+            if (counters != null) {
+                counters.relaxations += offsets[v + 1] - offsets[v];
+            }
+
+            // For each neighbor u of v
+            for (int i = offsets[v]; i < offsets[v + 1]; ++i) {
+                int u = targets[i];
+                int wgt = weights[i];
+
+                // If not presented in MST and found a road segment shorter than current vertex's weight
+                if (dist[u] > 0 && wgt < dist[u]) {
+                    dist[u] = wgt;
+                    parent[u] = v;
+
+                    // Not yet in heap
+                    if (hPos[u] == 0) {
+                        h.insert(u);
+                    } else {
+                        if (trace == Trace.FULL) {
+                            System.out.println("Called siftUp() on vertex: " + u);
+                        }
+                        h.decreaseKey(u);
+                    }
+                }
+            }
+
+            if (trace == Trace.FULL) {
+                System.out.print("dist[]: ");
+                for (int i = 1; i <= V; i++) System.out.print(i + "=" + (dist[i] == Integer.MAX_VALUE ? "∞" : dist[i]) + "  ");
+                System.out.println();
+
+                System.out.print("hPos[]: ");
+                for (int i = 1; i <= V; i++) System.out.print(i + "=" + hPos[i] + "  ");
+                System.out.println();
+
+                System.out.print("parent[]: ");
+                for (int i = 1; i <= V; i++) System.out.print(i + "=" + parent[i] + "  ");
+                System.out.println("\n");
+            }
+
+            // forest mode: when the tree is complete, grow the next one from the lowest vertex of the next component
+            if (components != null && h.isEmpty()) {
+                while (next <= V && (components.label(next) != next || components.connected(next, s))) {
+                    ++next;
+                }
+                if (next <= V) {
+                    treeWeights[trees - 1] = wgtSum - treeStart;
+                    treeStart = wgtSum;
+                    roots[trees++] = next;
+                    dist[next] = 0;
+                    h.insert(next++);
+                }
+            }
+        }
+        treeWeights[trees - 1] = wgtSum - treeStart;
+
+        if (counters != null) {
+            counters.settled = totalEdgesInMst + trees;
+            metrics.record(counters, System.nanoTime() - startTime);
+        }
+
+        if (trace != Trace.OFF) {
+            System.out.print("\nThere are " + V + " vertices and " + E + " edges in the input graph\n");
+            System.out.print("After running Prim’s MST Algorithm on Gibraltar's Roads Network (CSR): \n");
+            System.out.print("Weight of MST = " + wgtSum + "m\n");
+            System.out.print("Number of edges in MST = " + totalEdgesInMst + "\n");
+            if (trees > 1) {
+                System.out.print("Minimum spanning forest of " + trees + " trees:\n");
+                for (int i = 0; i < trees; ++i) {
+                    System.out.print("Tree rooted at " + roots[i] + ", weight = " + treeWeights[i] + "m\n");
+                }
+            }
+        }
+
+        return new MSTResult(s, parent, wgtSum, totalEdgesInMst,
+                             java.util.Arrays.copyOf(roots, trees), java.util.Arrays.copyOf(treeWeights, trees));
+    }
+
+    public SPTResult SPT_Dijkstra(int s) {
+        int v, u;
+        int totalEdgesInSpt = 0;
+
+        // counters of this call, null while metrics are disabled, see GibraltarBenchmark for timings and allocation
+        QueryCounters counters = metrics == null ? null : new QueryCounters();
+        long searchStart = counters == null ? 0 : System.nanoTime();
+
+        // Stores best known distance from s to every vertex
+        int[] dist = new int[V + 1];
+
+        // Stores the predecessor on the shortest path for each vertex
+        int[] parent = new int[V + 1];
+
+        // Position of vertex in the heap
+        int[] hPos = new int[V + 1];
+
+        // Initialize dist, parent, and hPos arrays (1-indexed arrays)
+        for (v = 1; v <= V; ++v) {
+            dist[v] = Integer.MAX_VALUE;
+            parent[v] = 0;
+            hPos[v] = 0;
+        }
+
+        // Distance to root s is 0
+        dist[s] = 0;
+
+        VertexQueue h = queueKind.create(V, dist, hPos, maxWeight);
+        if (trace != Trace.OFF && queueKind == QueueKind.BUCKET && !(h instanceof BucketQueue)) {
+            System.out.println("Longest road segment " + maxWeight + "m is too long for a bucket queue, using the binary heap");
+        }
+        if (counters != null) {
+            h = new CountingQueue(h, counters);
+        }
+
+        // Start from vertex s
+        h.insert(s);
+
+        // roots of the trees grown so far and the weight of each, more than one tree only in forest mode
+        int[] roots = new int[components == null ? 1 : components.count()];
+        int[] treeWeights = new int[roots.length];
+        int trees = 0;
+        int treeStart = 0;
+        int next = 1;
+        roots[trees++] = s;
+        int wgtSum = 0;
+
+        if (trace == Trace.FULL) {
+            System.out.println("\nStarting SPT Dijkstra's algorithm: \n");
+            System.out.println("Start from source vertex: " + s +
+                               ", dist = " + dist[s] +
+                               ", hPos[s] = " + hPos[s]);
+        }
+
+        while (!h.isEmpty()) {
+
+            // pop the vertex with minimal distance from source from the heap
+            v = h.remove();
+
+            if (parent[v] != 0) {
+                ++totalEdgesInSpt;
+                wgtSum += dist[v] - dist[parent[v]];
+            }
+
+            if (trace == Trace.FULL) {
+                System.out.println("Removed from heap: " + "vertex " + v +
+                               ", dist = " + dist[v]);
+            }
+
+            if (counters != null) {
+                counters.relaxations += offsets[v + 1] - offsets[v];
+            }
+
+            // For each neighbor u of v
+            for (int i = offsets[v]; i < offsets[v + 1]; ++i) {
+                u = targets[i];
+                if (dist[v] + weights[i] < dist[u]) {
+                    dist[u] = dist[v] + weights[i];
+                    parent[u] = v;
+
+                    // Not yet in heap
+                    if (hPos[u] == 0) {
+                        h.insert(u);
+                    } else {
+                        if (trace == Trace.FULL) {
+                            System.out.println("Called siftUp() on vertex: " + u);
+                        }
+                        h.decreaseKey(u);
+                    }
+                }
+            }
+
+            if (trace == Trace.FULL) {
+                System.out.print("dist[]: ");
+                for (int i = 1; i <= V; i++) System.out.print(i + "=" + (dist[i] == Integer.MAX_VALUE ? "∞" : dist[i]) + "  ");
+                System.out.println();
+
+                System.out.print("hPos[]: ");
+                for (int i = 1; i <= V; i++) System.out.print(i + "=" + hPos[i] + "  ");
+                System.out.println();
+
+                System.out.print("parent[]: ");
+                for (int i = 1; i <= V; i++) System.out.print(i + "=" + parent[i] + "  ");
+                System.out.println("\n");
+            }
+
+            // forest mode: when the tree is complete, grow the next one from the lowest vertex of the next component
+            if (components != null && h.isEmpty()) {
+                while (next <= V && (components.label(next) != next || components.connected(next, s))) {
+                    ++next;
+                }
+                if (next <= V) {
+                    treeWeights[trees - 1] = wgtSum - treeStart;
+                    treeStart = wgtSum;
+                    roots[trees++] = next;
+                    dist[next] = 0;
+
+                    // the new root's distance 0 is below the last removed key, which monotone queues only accept after a clear
+                    h.clear();
+                    h.insert(next++);
+                }
+            }
+        }
+        treeWeights[trees - 1] = wgtSum - treeStart;
+
+        // recorded before any summary gets printed so only the algorithm is measured
+        if (counters != null) {
+            counters.settled = totalEdgesInSpt + trees;
+            metrics.record(counters, System.nanoTime() - searchStart);
+        }
+
+        if (trace != Trace.OFF) {
+            System.out.print("After running Dijkstra’s SPT Algorithm on Gibraltar's Roads Network (CSR): \n");
+            System.out.print("Number of vertices connected in SPT = " + (totalEdgesInSpt + trees) + "\n");
+            System.out.print("Number of edges in SPT = " + totalEdgesInSpt + " (equal to V - 1 when the graph is connected)" + "\n");
+            if (trees > 1) {
+                System.out.print("Shortest path forest of " + trees + " trees, distances are from the root of each tree:\n");
+                for (int i = 0; i < trees; ++i) {
+                    System.out.print("Tree rooted at " + roots[i] + ", weight = " + treeWeights[i] + "m\n");
+                }
+            }
+            System.out.println("\nShortest Path Tree as it is built is:\n");
+            System.out.printf("%-8s %-8s %-20s\n", "Vertex", "Parent", "Distance from source " + s + " (m)");
+
+            for (int i = 1; i <= V; i++) {
+                System.out.printf("%-8s %-8s %-15s\n",
+                    i,
+                    (parent[i] == 0 ? "-" : parent[i]),
+                    (dist[i] == Integer.MAX_VALUE ? "∞" : dist[i] + "m"));
+            }
+        }
+
+        return new SPTResult(s, dist, parent, totalEdgesInSpt,
+                             java.util.Arrays.copyOf(roots, trees), java.util.Arrays.copyOf(treeWeights, trees));
+    }
+}
+
+
+/*
+ * Answer to a point-to-point query: the vertices of the route and its total length
+ */
+class Route {
+    // vertices from source to target, empty if the target is not reachable
+    final int[] vertices;
+
+    // total length of the route in meters, Integer.MAX_VALUE if the target is not reachable
+    final int length;
+
+    public Route(int[] vertices, int length) {
+        this.vertices = vertices;
+        this.length = length;
+    }
+
+    public boolean found() {
+        return length != Integer.MAX_VALUE;
+    }
+
+    @Override
+    public String toString() {
+        if (!found()) {
+            return "no route";
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < vertices.length; ++i) {
+            if (i > 0) {
+                sb.append(" -> ");
+            }
+            sb.append(vertices[i]);
+        }
+        return sb.append(" (").append(length).append("m)").toString();
+    }
+}
+
+
+/*
+ * Connected components of the road network, found with a lock-free union-find on a ForkJoinPool.
+ * Each task links the two ends of every edge in its block of rows, hooking the root with the
+ * larger number under the smaller one with compareAndSet, so links never form a cycle and every
+ * component ends up labelled with its lowest vertex. Two vertices are connected exactly when
+ * their labels are equal, which lets queries between components return without searching.
+ */
+class Components {
+    // vertices handled by one task before it stops splitting
+    private static final int GRAIN = 4096;
+
+    private final CSRGraph g;
+
+    // union-find parents while linking, then label[v] = lowest vertex of the component of v
+    private final AtomicIntegerArray uf;
+    private final int[] label;
+
+    // number of components, an isolated vertex counts as one
+    private final int count;
+
+    // time taken to label the components
+    final double millis;
+
+    public Components(CSRGraph g) {
+        this(g, ForkJoinPool.commonPool());
+    }
+
+    public Components(CSRGraph g, ForkJoinPool pool) {
+        long startTime = System.nanoTime();
+        this.g = g;
+        uf = new AtomicIntegerArray(g.V + 1);
+        label = new int[g.V + 1];
+        for (int v = 1; v <= g.V; ++v) {
+            uf.set(v, v);
+        }
+
+        pool.invoke(new Pass(1, g.V + 1, true));
+        pool.invoke(new Pass(1, g.V + 1, false));
+
+        int n = 0;
+        for (int v = 1; v <= g.V; ++v) {
+            if (label[v] == v) {
+                ++n;
+            }
+        }
+        count = n;
+        millis = (System.nanoTime() - startTime) / 1_000_000.0;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    // number of vertices labelled
+    public int vertices() {
+        return label.length - 1;
+    }
+
+    // lowest vertex of the component containing v
+    public int label(int v) {
+        return label[v];
+    }
+
+    public boolean connected(int u, int v) {
+        return label[u] == label[v];
+    }
+
+    // root of v, halving the path on the way with compareAndSet
+    private int find(int v) {
+        while (true) {
+            int p = uf.get(v);
+            if (p == v) {
+                return v;
+            }
+            int gp = uf.get(p);
+            if (gp != p) {
+                uf.compareAndSet(v, p, gp);
+            }
+            v = gp;
+        }
+    }
+
+    private void union(int u, int v) {
+        while (true) {
+            int a = find(u), b = find(v);
+            if (a == b) {
+                return;
+            }
+
+            // the larger root goes under the smaller one, retried if a was linked meanwhile
+            if (a < b) {
+                int t = a;
+                a = b;
+                b = t;
+            }
+            if (uf.compareAndSet(a, a, b)) {
+                return;
+            }
+        }
+    }
+
+    // links the edges of rows lo .. hi - 1, or labels those vertices once all edges are linked
+    private final class Pass extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int lo, hi;
+        private final boolean link;
+
+        Pass(int lo, int hi, boolean link) {
+            this.lo = lo;
+            this.hi = hi;
+            this.link = link;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > GRAIN) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Pass(lo, mid, link), new Pass(mid, hi, link));
+                return;
+            }
+
+            for (int u = lo; u < hi; ++u) {
+                if (!link) {
+                    label[u] = find(u);
+                    continue;
+                }
+                for (int i = g.offsets[u]; i < g.offsets[u + 1]; ++i) {
+                    if (u < g.targets[i]) {
+                        union(u, g.targets[i]);
+                    }
+                }
+            }
+        }
+    }
+}
+
+
+/*
+ * Search strategies for point-to-point queries
+ *    DIJKSTRA      - unidirectional Dijkstra from the source, stops when the target is settled
+ *    BIDIRECTIONAL - Dijkstra from both ends at once, stops when the two frontiers meet
+ *    ASTAR         - A* guided by the straight line distance between vertex coordinates
+ *    ALT           - A* guided by landmark distances and the triangle inequality
+ */
+enum SearchMode {DIJKSTRA, BIDIRECTIONAL, ASTAR, ALT};
+
+
+/*
+ * Reusable Dijkstra query context over a CSR graph.
+ * dist[], parent[], hPos[] and the heap are allocated once and kept alive between queries,
+ * and only the vertices touched by the previous query are reset, so a query costs time
+ * proportional to the part of the graph it explores instead of O(V) for initialisation.
+ * An engine is not thread safe: each thread uses its own engine over the shared read-only graph.
+ */
+class QueryEngine {
+    private final CSRGraph g;
+
+    // priority queue of the Dijkstra searches, A* and ALT always use the binary heap
+    private final QueueKind queueKind;
+
+    // search from the source, used by every query
+    private final Search fwd;
+
+    // search from the target, allocated by the first bidirectional query
+    private Search bwd;
+
+    // search ordered by distance plus estimate, allocated by the first A* or ALT query
+    private Search guided;
+
+    // vertex coordinates for ASTAR and landmark distances for ALT, null until set
+    private Coordinates coordinates;
+    private Landmarks landmarks;
+
+    // route queries between different components are answered without searching when set
+    private Components components;
+
+    // ALT queries: distance from every landmark to the target of the current query
+    private int[] landmarkToTarget;
+
+    // one-to-many queries: targetMark[v] == markStamp when v is one of the current targets
+    private int[] targetMark;
+    private int markStamp;
+
+    // number of vertices removed from the heaps by the last query
+    private int settled;
+
+    // true when the last query was shortestPathTree, so every dist[] of fwd is final
+    private boolean fullTree;
+
+    // every query records its counters and latency here when metrics are enabled, otherwise both are null
+    private final QueryMetrics metrics;
+    private final QueryCounters counters;
+
+    // bidirectional queries: length of the best route seen so far and the edge where it crosses over
+    private int best;
+    private int meetFwd, meetBwd;
+
+
+    /*
+     * Buffers of one search direction: the same dist[], parent[] and hPos[] arrays
+     * SPT_Dijkstra uses, plus the list of vertices touched since the last reset.
+     * A guided search orders its heap by key[] = dist[] + estimate instead of dist[].
+     */
+    static final class Search {
+        // best known distance from the root, Integer.MAX_VALUE while not reached
+        final int[] dist;
+
+        // predecessor on the shortest path, 0 for the root and unreached vertices
+        final int[] parent;
+
+        // position of vertex in the heap, 0 when not in the heap
+        final int[] hPos;
+
+        // heap priorities, the dist[] array itself unless the search is guided
+        final int[] key;
+
+        VertexQueue h;
+
+        // kind of h, the longest edge it was built for, and the counters it reports to
+        private final QueueKind queueKind;
+        private int queueWeight;
+        private final QueryCounters counters;
+
+        // vertices whose dist[] was set since the last reset
+        final int[] touched;
+        int touchedCount;
+
+        // root vertex of the search
+        int root;
+
+        Search(int V, boolean guided, QueueKind queueKind, int maxWeight) {
+            this(V, guided, queueKind, maxWeight, null);
+        }
+
+        // same as above, with the heap operations counted in counters unless it is null
+        Search(int V, boolean guided, QueueKind queueKind, int maxWeight, QueryCounters counters) {
+            dist = new int[V + 1];
+            parent = new int[V + 1];
+            hPos = new int[V + 1];
+            touched = new int[V];
+            key = guided ? new int[V + 1] : dist;
+
+            this.queueKind = queueKind;
+            this.queueWeight = maxWeight;
+            this.counters = counters;
+            h = createQueue();
+
+            for (int v = 1; v <= V; ++v) {
+                dist[v] = Integer.MAX_VALUE;
+            }
+        }
+
+        private VertexQueue createQueue() {
+            VertexQueue q = queueKind.create(dist.length - 1, key, hPos, queueWeight);
+            return counters == null ? q : new CountingQueue(q, counters);
+        }
+
+        // a bucket queue only holds keys up to queueWeight apart, so build a new one
+        // before the next reset if CSRGraph.updateEdge has made a road longer than that
+        void fit(int maxWeight) {
+            if (maxWeight > queueWeight && queueKind == QueueKind.BUCKET) {
+                queueWeight = maxWeight;
+                h = createQueue();
+            }
+        }
+
+        // forget the previous search by resetting only the vertices it touched, then start from r
+        void reset(int r) {
+            reset(r, 0);
+        }
+
+        // same as reset(r), with hr the estimate of r for a guided search
+        void reset(int r, int hr) {
+            for (int i = 0; i < touchedCount; ++i) {
+                int v = touched[i];
+                dist[v] = Integer.MAX_VALUE;
+                parent[v] = 0;
+                hPos[v] = 0;
+            }
+            touchedCount = 0;
+            h.clear();
+
+            root = r;
+            dist[r] = 0;
+            key[r] = hr;
+            touched[touchedCount++] = r;
+            h.insert(r);
+        }
+
+        // offer distance du to u through v, returns true if it improved dist[u]
+        boolean update(int u, int du, int v) {
+            return update(u, du, v, 0);
+        }
+
+        // same as update(u, du, v), with hu the estimate of u for a guided search
+        boolean update(int u, int du, int v, int hu) {
+            if (du >= dist[u]) {
+                return false;
+            }
+
+            // first time u is reached, remember it for the next reset
+            if (dist[u] == Integer.MAX_VALUE) {
+                touched[touchedCount++] = u;
+            }
+
+            dist[u] = du;
+            key[u] = du + hu;
+            parent[u] = v;
+
+            // a guided search may reopen a vertex it already removed, since hPos[u] is 0 again
+            if (hPos[u] == 0) {
+                h.insert(u);
+            } else {
+                h.decreaseKey(u);
+            }
+            return true;
+        }
+
+        // number of vertices from the root to v along parent[], including both ends
+        int depth(int v) {
+            int n = 1;
+            for (int u = v; u != root; u = parent[u]) {
+                ++n;
+            }
+            return n;
+        }
+    }
+
+
+    public QueryEngine(CSRGraph g) {
+        this(g, QueueKind.BINARY);
+    }
+
+    // engine whose Dijkstra searches run on the chosen priority queue
+    public QueryEngine(CSRGraph g, QueueKind queueKind) {
+        this(g, queueKind, null);
+    }
+
+    // same as above, with the counters and latency of every query recorded in metrics unless it is null
+    public QueryEngine(CSRGraph g, QueueKind queueKind, QueryMetrics metrics) {
+        this.g = g;
+        this.queueKind = queueKind;
+        this.metrics = metrics;
+        counters = metrics == null ? null : new QueryCounters();
+        fwd = new Search(g.V, false, queueKind, g.maxWeight, counters);
+    }
+
+    // keep the queues large enough for the longest road, which CSRGraph.updateEdge may have raised
+    private void fitQueues() {
+        fwd.fit(g.maxWeight);
+        if (bwd != null) {
+            bwd.fit(g.maxWeight);
+        }
+    }
+
+    private void check(int v) {
+        if (v < 1 || v > g.V) {
+            throw new IllegalArgumentException("Vertex " + v + " is not in 1.." + g.V);
+        }
+    }
+
+    // compute the full shortest path tree from s, the same tree SPT_Dijkstra builds
+    public void shortestPathTree(int s) {
+        check(s);
+        fitQueues();
+        long startTime = counters == null ? 0 : System.nanoTime();
+        fwd.reset(s);
+        settled = 0;
+
+        while (!fwd.h.isEmpty()) {
+            relax(fwd.h.remove());
+        }
+        fullTree = true;
+        record(startTime);
+    }
+
+    // shortest route from s to t with unidirectional Dijkstra
+    public Route shortestPath(int s, int t) {
+        return shortestPath(s, t, SearchMode.DIJKSTRA);
+    }
+
+    // shortest route from s to t with the chosen search strategy
+    public Route shortestPath(int s, int t, SearchMode mode) {
+        long startTime = counters == null ? 0 : System.nanoTime();
+        Route route = route(s, t, mode);
+        record(startTime);
+        return route;
+    }
+
+    private Route route(int s, int t, SearchMode mode) {
+        check(s);
+        check(t);
+        fitQueues();
+        fullTree = false;
+
+        // no route between different components
+        if (components != null && !components.connected(s, t)) {
+            fwd.reset(s);
+            settled = 0;
+            return new Route(new int[0], Integer.MAX_VALUE);
+        }
+
+        switch (mode) {
+            case BIDIRECTIONAL:
+                return bidirectional(s, t);
+            case ASTAR:
+            case ALT:
+                return guided(s, t, mode);
+            default:
+                return dijkstra(s, t);
+        }
+    }
+
+    // add the counters of the query started at startTime to the metrics
+    private void record(long startTime) {
+        if (counters != null) {
+            counters.settled = settled;
+            metrics.record(counters, System.nanoTime() - startTime);
+        }
+    }
+
+    /*
+     * The search stops as soon as t is removed from the heap, since its distance is final
+     * at that point, so only the vertices closer to s than t are settled.
+     * After this query distance() of vertices other than t may be tentative.
+     */
+    private Route dijkstra(int s, int t) {
+        fwd.reset(s);
+        settled = 0;
+
+        while (!fwd.h.isEmpty()) {
+            int v = fwd.h.remove();
+            if (v == t) {
+                ++settled;
+                break;
+            }
+            relax(v);
+        }
+
+        return new Route(path(t), fwd.dist[t]);
+    }
+
+    // use vertex coordinates for ASTAR queries
+    public void setCoordinates(Coordinates coordinates) {
+        this.coordinates = coordinates;
+    }
+
+    // skip the search for routes between different components
+    public void setComponents(Components components) {
+        this.components = components;
+    }
+
+    // use precomputed landmark distances for ALT queries
+    public void setLandmarks(Landmarks landmarks) {
+        this.landmarks = landmarks;
+        landmarkToTarget = new int[landmarks.count()];
+    }
+
+    /*
+     * A* search: the heap is ordered by dist + a lower bound of the remaining distance to t,
+     * so the search is pulled towards t instead of growing a circle around s.
+     * With a lower bound that never overestimates, t has its final distance when it is removed.
+     */
+    private Route guided(int s, int t, SearchMode mode) {
+        if (mode == SearchMode.ASTAR && coordinates == null) {
+            throw new IllegalStateException("ASTAR queries need vertex coordinates, see setCoordinates()");
+        }
+        if (mode == SearchMode.ALT && landmarks == null) {
+            throw new IllegalStateException("ALT queries need landmarks, see setLandmarks()");
+        }
+
+        if (guided == null) {
+            guided = new Search(g.V, true, QueueKind.BINARY, g.maxWeight, counters);
+        }
+
+        if (mode == SearchMode.ALT) {
+            landmarks.distancesTo(t, landmarkToTarget);
+        }
+
+        int[] offsets = g.offsets;
+        int[] targets = g.targets;
+        int[] weights = g.weights;
+        int[] dist = guided.dist;
+        boolean alt = mode == SearchMode.ALT;
+
+        guided.reset(s, alt ? landmarks.lowerBound(s, landmarkToTarget) : coordinates.distance(s, t));
+        settled = 0;
+
+        while (!guided.h.isEmpty()) {
+            int v = guided.h.remove();
+            ++settled;
+            if (v == t) {
+                break;
+            }
+
+            if (counters != null) {
+                counters.relaxations += offsets[v + 1] - offsets[v];
+            }
+
+            int dv = dist[v];
+            for (int i = offsets[v]; i < offsets[v + 1]; ++i) {
+                int u = targets[i];
+                int du = dv + weights[i];
+
+                if (du < dist[u]) {
+                    int hu = alt ? landmarks.lowerBound(u, landmarkToTarget) : coordinates.distance(u, t);
+                    guided.update(u, du, v, hu);
+                }
+            }
+        }
+
+        if (dist[t] == Integer.MAX_VALUE) {
+            return new Route(new int[0], Integer.MAX_VALUE);
+        }
+
+        int n = guided.depth(t);
+        int[] p = new int[n];
+        for (int u = t; n > 0; u = guided.parent[u]) {
+            p[--n] = u;
+        }
+        return new Route(p, dist[t]);
+    }
+
+    /*
+     * Distances from s to every vertex of targets[], written to out[offset .. offset + targets.length - 1].
+     * One Dijkstra search serves all the targets and stops as soon as the last of them is settled.
+     */
+    public void distances(int s, int[] targets, int[] out, int offset) {
+        check(s);
+        fitQueues();
+        fullTree = false;
+        long startTime = counters == null ? 0 : System.nanoTime();
+        if (targetMark == null) {
+            targetMark = new int[g.V + 1];
+        }
+
+        // a new stamp marks the targets without clearing targetMark[]
+        if (++markStamp == 0) {
+            java.util.Arrays.fill(targetMark, 0);
+            markStamp = 1;
+        }
+
+        int remaining = 0;
+        for (int t : targets) {
+            check(t);
+            if (targetMark[t] != markStamp) {
+                targetMark[t] = markStamp;
+                ++remaining;
+            }
+        }
+
+        fwd.reset(s);
+        settled = 0;
+
+        while (remaining > 0 && !fwd.h.isEmpty()) {
+            int v = fwd.h.remove();
+            if (targetMark[v] == markStamp && --remaining == 0) {
+                ++settled;
+                break;
+            }
+            relax(v);
+        }
+
+        for (int j = 0; j < targets.length; ++j) {
+            out[offset + j] = fwd.dist[targets[j]];
+        }
+        record(startTime);
+    }
+
+    // settle v and relax all the road segments leaving it
+    private void relax(int v) {
+        int[] offsets = g.offsets;
+        int[] targets = g.targets;
+        int[] weights = g.weights;
+
+        ++settled;
+        int dv = fwd.dist[v];
+        if (counters != null) {
+            counters.relaxations += offsets[v + 1] - offsets[v];
+        }
+
+        for (int i = offsets[v]; i < offsets[v + 1]; ++i) {
+            fwd.update(targets[i], dv + weights[i], v);
+        }
+    }
+
+    /*
+     * Bidirectional Dijkstra: grows a forward search from s and a backward search from t
+     * (the roads are undirected, so both use the same rows), always expanding the side with
+     * the smaller heap minimum. Every relaxed edge that reaches a vertex already labelled by
+     * the other side is a candidate route. The search stops once the two heap minimums add up
+     * to at least the best candidate, as no unsettled route can be shorter.
+     */
+    private Route bidirectional(int s, int t) {
+        if (bwd == null) {
+            bwd = new Search(g.V, false, queueKind, g.maxWeight, counters);
+        }
+
+        fwd.reset(s);
+        bwd.reset(t);
+        settled = 0;
+        best = s == t ? 0 : Integer.MAX_VALUE;
+        meetFwd = meetBwd = s;
+
+        while (!fwd.h.isEmpty() && !bwd.h.isEmpty()) {
+            int topFwd = fwd.dist[fwd.h.peek()];
+            int topBwd = bwd.dist[bwd.h.peek()];
+
+            if (best != Integer.MAX_VALUE && (long) topFwd + topBwd >= best) {
+                break;
+            }
+
+            if (topFwd <= topBwd) {
+                relaxMeeting(fwd, bwd, fwd.h.remove(), true);
+            } else {
+                relaxMeeting(bwd, fwd, bwd.h.remove(), false);
+            }
+        }
+
+        if (best == Integer.MAX_VALUE) {
+            return new Route(new int[0], Integer.MAX_VALUE);
+        }
+
+        // forward tree from s to meetFwd, then backward tree from meetBwd to t
+        int nf = fwd.depth(meetFwd);
+        int nb = meetFwd == meetBwd ? 0 : bwd.depth(meetBwd);
+        int[] p = new int[nf + nb];
+
+        int k = nf;
+        for (int u = meetFwd; k > 0; u = fwd.parent[u]) {
+            p[--k] = u;
+        }
+        k = nf;
+        for (int u = meetBwd; k < nf + nb; u = bwd.parent[u]) {
+            p[k++] = u;
+        }
+
+        return new Route(p, best);
+    }
+
+    // settle v in search sr and relax its road segments, checking each one against the other search
+    private void relaxMeeting(Search sr, Search other, int v, boolean forward) {
+        int[] offsets = g.offsets;
+        int[] targets = g.targets;
+        int[] weights = g.weights;
+
+        ++settled;
+        int dv = sr.dist[v];
+        if (counters != null) {
+            counters.relaxations += offsets[v + 1] - offsets[v];
+        }
+
+        for (int i = offsets[v]; i < offsets[v + 1]; ++i) {
+            int u = targets[i];
+            int du = dv + weights[i];
+            sr.update(u, du, v);
+
+            if (other.dist[u] != Integer.MAX_VALUE && (long) du + other.dist[u] < best) {
+                best = du + other.dist[u];
+                meetFwd = forward ? v : u;
+                meetBwd = forward ? u : v;
+            }
+        }
+    }
+
+    // distance in meters from the source of the last query to v, Integer.MAX_VALUE if not reachable
+    public int distance(int v) {
+        return fwd.dist[v];
+    }
+
+    // vertices on the shortest path from the source of the last query to v, empty if not reachable
+    public int[] path(int v) {
+        if (fwd.dist[v] == Integer.MAX_VALUE) {
+            return new int[0];
+        }
+
+        int n = fwd.depth(v);
+        int[] p = new int[n];
+        for (int u = v; n > 0; u = fwd.parent[u]) {
+            p[--n] = u;
+        }
+        return p;
+    }
+
+    // source vertex of the last query
+    public int source() {
+        return fwd.root;
+    }
+
+    // number of vertices settled by the last query
+    public int settledCount() {
+        return settled;
+    }
+
+    /*
+     * Copy of the last shortest path tree, in the same form SPT_Dijkstra returns.
+     * Only a full tree has final distances for every touched vertex, so the last query
+     * must have been shortestPathTree.
+     */
+    public SPTResult toResult() {
+        if (!fullTree) {
+            throw new IllegalStateException("toResult() needs a shortestPathTree query, the last query stopped early");
+        }
+        return new SPTResult(fwd.root, fwd.dist.clone(), fwd.parent.clone(), fwd.touchedCount - 1);
+    }
+}
+
+
+/*
+ * Optional vertex coordinates for A* queries, read from a side file next to the graph:
+ * first line V, then one "v latitude longitude" line per vertex in decimal degrees.
+ * The great-circle distance between two vertices never exceeds the length of the roads
+ * between them, so it is a lower bound A* can use.
+ */
+class Coordinates {
+    // mean radius of the Earth in meters
+    private static final double EARTH_RADIUS = 6_371_000.0;
+
+    // latitude and longitude of each vertex in radians
+    private final double[] lat;
+    private final double[] lon;
+
+    // cos(lat[v]), used by every distance
+    private final double[] cosLat;
+
+
+    public Coordinates(String coordFile, int V) throws IOException {
+        lat = new double[V + 1];
+        lon = new double[V + 1];
+        cosLat = new double[V + 1];
+
+        BufferedReader reader = new BufferedReader(new FileReader(coordFile));
+        String splits = " +";  // multiple whitespace as delimiter
+        String line = reader.readLine();
+
+        int n = Integer.parseInt(line.trim());
+        if (n != V) {
+            reader.close();
+            throw new IOException(coordFile + " has coordinates for " + n + " vertices, the graph has " + V);
+        }
+
+        for (int i = 1; i <= V; ++i) {
+            String[] parts = reader.readLine().trim().split(splits);
+            int v = Integer.parseInt(parts[0]);
+            lat[v] = Math.toRadians(Double.parseDouble(parts[1]));
+            lon[v] = Math.toRadians(Double.parseDouble(parts[2]));
+            cosLat[v] = Math.cos(lat[v]);
+        }
+        reader.close();
+    }
+
+    // great-circle (haversine) distance in whole meters, rounded down so it stays a lower bound
+    public int distance(int u, int v) {
+        double sinLat = Math.sin((lat[v] - lat[u]) / 2);
+        double sinLon = Math.sin((lon[v] - lon[u]) / 2);
+        double a = sinLat * sinLat + cosLat[u] * cosLat[v] * sinLon * sinLon;
+        return (int) (2 * EARTH_RADIUS * Math.asin(Math.min(1.0, Math.sqrt(a))));
+    }
+}
+
+
+/*
+ * Landmarks for ALT (A*, Landmarks, Triangle inequality) queries.
+ * The shortest distances from a few landmark vertices to every vertex are precomputed with
+ * Dijkstra. For any landmark L the triangle inequality gives |d(L, t) - d(L, v)| <= d(v, t),
+ * so the largest of these differences is a lower bound that needs no coordinates.
+ * Landmarks are chosen far apart (each one the farthest vertex from those chosen before),
+ * which makes the bounds tight for routes crossing the network.
+ */
+class Landmarks {
+    // landmark vertices
+    private final int[] vertices;
+
+    // dist[l][v] = shortest distance from landmark l to v, Integer.MAX_VALUE if not reachable
+    private final int[][] dist;
+
+
+    public Landmarks(CSRGraph g, int k) {
+        QueryEngine engine = new QueryEngine(g);
+        vertices = new int[k];
+        dist = new int[k][];
+
+        // distance from v to the nearest landmark chosen so far
+        int[] nearest = new int[g.V + 1];
+        java.util.Arrays.fill(nearest, Integer.MAX_VALUE);
+
+        // start from the farthest vertex from vertex 1, then keep picking the farthest vertex
+        engine.shortestPathTree(1);
+        int next = farthest(engine, g.V, null);
+
+        for (int l = 0; l < k; ++l) {
+            vertices[l] = next;
+            engine.shortestPathTree(next);
+            dist[l] = engine.toResult().dist;
+
+            for (int v = 1; v <= g.V; ++v) {
+                nearest[v] = Math.min(nearest[v], dist[l][v]);
+            }
+            next = farthest(engine, g.V, nearest);
+        }
+    }
+
+    // reachable vertex with the largest distance in the last tree (or in nearest[] if given)
+    private static int farthest(QueryEngine engine, int V, int[] nearest) {
+        int best = 1;
+        int bestDist = -1;
+        for (int v = 1; v <= V; ++v) {
+            int d = nearest == null ? engine.distance(v) : nearest[v];
+            if (d != Integer.MAX_VALUE && d > bestDist) {
+                best = v;
+                bestDist = d;
+            }
+        }
+        return best;
+    }
+
+    public int count() {
+        return vertices.length;
+    }
+
+    public int[] vertices() {
+        return vertices.clone();
+    }
+
+    // copy the distance from every landmark to t into toTarget[], done once per query
+    public void distancesTo(int t, int[] toTarget) {
+        for (int l = 0; l < vertices.length; ++l) {
+            toTarget[l] = dist[l][t];
+        }
+    }
+
+    // lower bound on d(v, t) from the landmark distances to t
+    public int lowerBound(int v, int[] toTarget) {
+        int best = 0;
+        for (int l = 0; l < vertices.length; ++l) {
+            int dv = dist[l][v];
+            int dt = toTarget[l];
+
+            // a landmark in another component than v or t gives no bound
+            if (dv != Integer.MAX_VALUE && dt != Integer.MAX_VALUE) {
+                int diff = dv > dt ? dv - dt : dt - dv;
+                if (diff > best) {
+                    best = diff;
+                }
+            }
+        }
+        return best;
+    }
+}
+
+
+/*
+ * Contraction Hierarchies for point-to-point queries.
+ * Preprocessing contracts the vertices one at a time in order of importance (fewest shortcuts
+ * added, fewest neighbours already contracted). Contracting v removes it from the graph and adds
+ * a shortcut u--w for each pair of neighbours whose shortest path went through v, unless a
+ * witness search finds another path that is at least as short.
+ * Every edge then points "up" from the vertex contracted first to the one contracted later, and
+ * a shortest route always climbs from s to a peak and descends to t, so queries only ever follow
+ * upward edges from both ends (see CHQuery).
+ */
+class ContractionHierarchy {
+    // "CHG1" in ASCII
+    private static final int MAGIC = 0x43484731;
+    private static final int HEADER_INTS = 4;
+
+    // V = number of vertices
+    final int V;
+
+    // rank[v] = position of v in the contraction order, 1 is contracted first
+    final int[] rank;
+
+    // upward graph in CSR form: edges from v to neighbours of higher rank, roads and shortcuts
+    final int[] offsets;
+    final int[] targets;
+    final int[] weights;
+
+    // mids[i] = vertex bypassed by the shortcut targets[i], 0 for an original road segment
+    final int[] mids;
+
+    // number of shortcuts in the upward graph
+    final int shortcuts;
+
+    // time taken by preprocessing in milliseconds, 0 for a hierarchy read from a file
+    final double preprocessMillis;
+
+
+    private ContractionHierarchy(int[] rank, int[] offsets, int[] targets, int[] weights, int[] mids,
+                                 int shortcuts, double preprocessMillis) {
+        this.V = rank.length - 1;
+        this.rank = rank;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.mids = mids;
+        this.shortcuts = shortcuts;
+        this.preprocessMillis = preprocessMillis;
+    }
+
+    // compute the node ordering and the shortcuts of g
+    public static ContractionHierarchy build(CSRGraph g) {
+        long startTime = System.nanoTime();
+        Builder b = new Builder(g);
+        b.contractAll();
+        return b.hierarchy((System.nanoTime() - startTime) / 1_000_000.0);
+    }
+
+    /*
+     * Contraction state: the remaining graph as growable adjacency arrays
+     * (nbr/wgt/mid[v][0 .. deg[v] - 1]), the priority queue of vertices still to contract
+     * and the buffers of the witness searches.
+     */
+    private static final class Builder {
+        // witness searches give up after settling this many vertices and keep the shortcut
+        private static final int WITNESS_SETTLE_LIMIT = 500;
+
+        final int V;
+
+        // remaining graph, a contracted vertex is removed from the rows of its neighbours
+        final int[][] nbr;
+        final int[][] wgt;
+        final int[][] mid;
+        final int[] deg;
+
+        // number of neighbours of v contracted so far
+        final int[] deleted;
+
+        // contraction order, vertices are taken from the queue by smallest priority
+        final int[] rank;
+        final int[] priority;
+        final int[] qPos;
+        final Heap queue;
+
+        // upward edges of each vertex, recorded when it is contracted
+        final int[][] upTarget;
+        final int[][] upWeight;
+        final int[][] upMid;
+
+        // witness search buffers, reset through the touched list like QueryEngine
+        final int[] wDist;
+        final int[] wPos;
+        final Heap wHeap;
+        final int[] wTouched;
+        int wTouchedCount;
+
+        Builder(CSRGraph g) {
+            V = g.V;
+            nbr = new int[V + 1][];
+            wgt = new int[V + 1][];
+            mid = new int[V + 1][];
+            deg = new int[V + 1];
+            deleted = new int[V + 1];
+            rank = new int[V + 1];
+            priority = new int[V + 1];
+            qPos = new int[V + 1];
+            queue = new Heap(V, priority, qPos);
+            upTarget = new int[V + 1][];
+            upWeight = new int[V + 1][];
+            upMid = new int[V + 1][];
+            wDist = new int[V + 1];
+            wPos = new int[V + 1];
+            wHeap = new Heap(V, wDist, wPos);
+            wTouched = new int[V];
+
+            for (int v = 1; v <= V; ++v) {
+                int n = Math.max(1, g.offsets[v + 1] - g.offsets[v]);
+                nbr[v] = new int[n];
+                wgt[v] = new int[n];
+                mid[v] = new int[n];
+                wDist[v] = Integer.MAX_VALUE;
+            }
+
+            // parallel roads collapse to the shortest one, loops are dropped
+            for (int v = 1; v <= V; ++v) {
+                for (int i = g.offsets[v]; i < g.offsets[v + 1]; ++i) {
+                    if (g.targets[i] != v) {
+                        addArc(v, g.targets[i], g.weights[i], 0);
+                    }
+                }
+            }
+        }
+
+        // add arc u -> w or lower its weight if it is already there
+        private void addArc(int u, int w, int weight, int via) {
+            for (int i = 0; i < deg[u]; ++i) {
+                if (nbr[u][i] == w) {
+                    if (weight < wgt[u][i]) {
+                        wgt[u][i] = weight;
+                        mid[u][i] = via;
+                    }
+                    return;
+                }
+            }
+
+            if (deg[u] == nbr[u].length) {
+                nbr[u] = java.util.Arrays.copyOf(nbr[u], 2 * deg[u]);
+                wgt[u] = java.util.Arrays.copyOf(wgt[u], 2 * deg[u]);
+                mid[u] = java.util.Arrays.copyOf(mid[u], 2 * deg[u]);
+            }
+            nbr[u][deg[u]] = w;
+            wgt[u][deg[u]] = weight;
+            mid[u][deg[u]] = via;
+            ++deg[u];
+        }
+
+        // remove arc u -> w by moving the last arc of u into its slot
+        private void removeArc(int u, int w) {
+            for (int i = 0; i < deg[u]; ++i) {
+                if (nbr[u][i] == w) {
+                    --deg[u];
+                    nbr[u][i] = nbr[u][deg[u]];
+                    wgt[u][i] = wgt[u][deg[u]];
+                    mid[u][i] = mid[u][deg[u]];
+                    return;
+                }
+            }
+        }
+
+        /*
+         * Dijkstra from u in the remaining graph without vertex skip, stopping once the
+         * heap minimum passes limit or the settle limit is reached. Distances are left in wDist[].
+         */
+        private void witnessSearch(int u, int skip, int limit) {
+            for (int i = 0; i < wTouchedCount; ++i) {
+                int x = wTouched[i];
+                wDist[x] = Integer.MAX_VALUE;
+                wPos[x] = 0;
+            }
+            wTouchedCount = 0;
+            wHeap.clear();
+
+            wDist[u] = 0;
+            wTouched[wTouchedCount++] = u;
+            wHeap.insert(u);
+
+            int settled = 0;
+            while (!wHeap.isEmpty()) {
+                int x = wHeap.remove();
+                if (wDist[x] > limit || ++settled > WITNESS_SETTLE_LIMIT) {
+                    break;
+                }
+
+                for (int i = 0; i < deg[x]; ++i) {
+                    int y = nbr[x][i];
+                    int dy = wDist[x] + wgt[x][i];
+
+                    if (y != skip && dy < wDist[y]) {
+                        if (wDist[y] == Integer.MAX_VALUE) {
+                            wTouched[wTouchedCount++] = y;
+                        }
+                        wDist[y] = dy;
+
+                        if (wPos[y] == 0) {
+                            wHeap.insert(y);
+                        } else {
+                            wHeap.siftUp(wPos[y]);
+                        }
+                    }
+                }
+            }
+        }
+
+        // shortcuts needed to contract v, added to the graph unless simulate is set
+        private int contract(int v, boolean simulate) {
+            int added = 0;
+
+            for (int i = 0; i < deg[v]; ++i) {
+                int u = nbr[v][i];
+
+                // longest detour through v that still has to be checked from u
+                int maxVia = -1;
+                for (int j = i + 1; j < deg[v]; ++j) {
+                    maxVia = Math.max(maxVia, wgt[v][i] + wgt[v][j]);
+                }
+                if (maxVia < 0) {
+                    continue;
+                }
+
+                witnessSearch(u, v, maxVia);
+
+                for (int j = i + 1; j < deg[v]; ++j) {
+                    int w = nbr[v][j];
+                    int via = wgt[v][i] + wgt[v][j];
+
+                    if (wDist[w] > via) {
+                        ++added;
+                        if (!simulate) {
+                            addArc(u, w, via, v);
+                            addArc(w, u, via, v);
+                        }
+                    }
+                }
+            }
+            return added;
+        }
+
+        // edge difference plus the number of contracted neighbours, smaller is contracted first
+        private int importance(int v) {
+            return contract(v, true) - deg[v] + deleted[v];
+        }
+
+        void contractAll() {
+            int v;
+
+            for (v = 1; v <= V; ++v) {
+                priority[v] = importance(v);
+                queue.insert(v);
+            }
+
+            int order = 0;
+            while (!queue.isEmpty()) {
+                v = queue.remove();
+
+                // lazy update: the priority may be stale, put v back if it is no longer the minimum
+                int p = importance(v);
+                if (!queue.isEmpty() && p > priority[queue.peek()]) {
+                    priority[v] = p;
+                    queue.insert(v);
+                    continue;
+                }
+
+                rank[v] = ++order;
+
+                // all remaining neighbours are contracted later, so these are the upward edges of v
+                upTarget[v] = java.util.Arrays.copyOf(nbr[v], deg[v]);
+                upWeight[v] = java.util.Arrays.copyOf(wgt[v], deg[v]);
+                upMid[v] = java.util.Arrays.copyOf(mid[v], deg[v]);
+
+                contract(v, false);
+
+                for (int i = 0; i < deg[v]; ++i) {
+                    int u = nbr[v][i];
+                    removeArc(u, v);
+                    ++deleted[u];
+                }
+
+                // the neighbours lost an edge and maybe gained shortcuts, refresh their priorities
+                for (int i = 0; i < deg[v]; ++i) {
+                    int u = nbr[v][i];
+                    int old = priority[u];
+                    priority[u] = importance(u);
+
+                    if (priority[u] < old) {
+                        queue.siftUp(qPos[u]);
+                    } else {
+                        queue.siftDown(qPos[u]);
+                    }
+                }
+                deg[v] = 0;
+            }
+        }
+
+        // pack the recorded upward edges into CSR arrays
+        ContractionHierarchy hierarchy(double preprocessMillis) {
+            int[] offsets = new int[V + 2];
+            for (int v = 1; v <= V; ++v) {
+                offsets[v + 1] = offsets[v] + upTarget[v].length;
+            }
+
+            int m = offsets[V + 1];
+            int[] targets = new int[m];
+            int[] weights = new int[m];
+            int[] mids = new int[m];
+            int shortcuts = 0;
+
+            for (int v = 1; v <= V; ++v) {
+                System.arraycopy(upTarget[v], 0, targets, offsets[v], upTarget[v].length);
+                System.arraycopy(upWeight[v], 0, weights, offsets[v], upWeight[v].length);
+                System.arraycopy(upMid[v], 0, mids, offsets[v], upMid[v].length);
+                for (int x : upMid[v]) {
+                    if (x != 0) {
+                        ++shortcuts;
+                    }
+                }
+            }
+
+            return new ContractionHierarchy(rank, offsets, targets, weights, mids, shortcuts, preprocessMillis);
+        }
+    }
+
+    // index of the upward edge between a and b, stored at whichever of the two has the lower rank
+    int edgeIndex(int a, int b) {
+        int lo = rank[a] < rank[b] ? a : b;
+        int hi = lo == a ? b : a;
+        for (int i = offsets[lo]; i < offsets[lo + 1]; ++i) {
+            if (targets[i] == hi) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // true if rank[1..V] holds each of 1..V exactly once
+    private static boolean isOrder(int[] rank) {
+        boolean[] seen = new boolean[rank.length];
+        for (int v = 1; v < rank.length; ++v) {
+            if (rank[v] < 1 || seen[rank[v]]) {
+                return false;
+            }
+            seen[rank[v]] = true;
+        }
+        return true;
+    }
+
+    // number of shortcuts, or -1 if an edge leads to a lower rank or a shortcut's two halves
+    // are missing. a shortcut's mid must be contracted before both ends, so unpacking ends
+    private int checkEdges() {
+        int found = 0;
+        for (int v = 1; v <= V; ++v) {
+            for (int i = offsets[v]; i < offsets[v + 1]; ++i) {
+                int t = targets[i];
+                int m = mids[i];
+                if (rank[t] <= rank[v]) {
+                    return -1;
+                }
+                if (m != 0) {
+                    if (rank[m] >= rank[v] || edgeIndex(v, m) < 0 || edgeIndex(m, t) < 0) {
+                        return -1;
+                    }
+                    ++found;
+                }
+            }
+        }
+        return found;
+    }
+
+    /*
+     * Persist the augmented graph. Layout (little-endian ints):
+     *    header - magic "CHG1", V, number of upward edges M, number of shortcuts
+     *    rank (V + 1), offsets (V + 2), targets (M), weights (M), mids (M)
+     */
+    public void write(String file) throws IOException {
+        try (FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+                                               StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+
+            buf.putInt(MAGIC).putInt(V).putInt(targets.length).putInt(shortcuts);
+            GraphSnapshot.writeInts(ch, buf, rank);
+            GraphSnapshot.writeInts(ch, buf, offsets);
+            GraphSnapshot.writeInts(ch, buf, targets);
+            GraphSnapshot.writeInts(ch, buf, weights);
+            GraphSnapshot.writeInts(ch, buf, mids);
+
+            buf.flip();
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+        }
+    }
+
+    // read a hierarchy written by write()
+    public static ContractionHierarchy open(String file) throws IOException {
+        try (FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < 4L * HEADER_INTS) {
+                throw new IOException(file + " is too small to be a contraction hierarchy");
+            }
+
+            IntBuffer header = ch.map(FileChannel.MapMode.READ_ONLY, 0, 4L * HEADER_INTS)
+                                 .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            if (header.get(0) != MAGIC) {
+                throw new IOException(file + " is not a contraction hierarchy");
+            }
+
+            int V = header.get(1);
+            int m = header.get(2);
+            int shortcuts = header.get(3);
+            if (V < 0 || m < 0 || size != 4L * (HEADER_INTS + (V + 1L) + (V + 2L) + 3L * m)) {
+                throw new IOException(file + " has a size that does not match V = " + V + ", M = " + m);
+            }
+
+            long pos = 4L * HEADER_INTS;
+            int[] rank = GraphSnapshot.readInts(ch, pos, V + 1, 0, V, false);
+            pos += 4L * (V + 1);
+            int[] offsets = GraphSnapshot.readInts(ch, pos, V + 2, 0, m, true);
+            pos += 4L * (V + 2);
+            int[] targets = GraphSnapshot.readInts(ch, pos, m, 1, V, false);
+            pos += 4L * m;
+            int[] weights = GraphSnapshot.readInts(ch, pos, m);
+            pos += 4L * m;
+            int[] mids = GraphSnapshot.readInts(ch, pos, m, 0, V, false);
+
+            if (rank == null || rank[0] != 0 || !isOrder(rank)) {
+                throw new IOException(file + " has a contraction order that is not a permutation of 1.." + V);
+            }
+            if (offsets == null || offsets[0] != 0 || offsets[1] != 0 || offsets[V + 1] != m) {
+                throw new IOException(file + " has corrupt row offsets");
+            }
+            if (targets == null || mids == null) {
+                throw new IOException(file + " has an edge to a vertex outside 1.." + V);
+            }
+
+            ContractionHierarchy hierarchy =
+                new ContractionHierarchy(rank, offsets, targets, weights, mids, shortcuts, 0);
+            int found = hierarchy.checkEdges();
+            if (found < 0) {
+                throw new IOException(file + " has an edge that is not upward or a shortcut that cannot be unpacked");
+            }
+            if (found != shortcuts) {
+                throw new IOException(file + " records " + shortcuts + " shortcuts but holds " + found);
+            }
+            return hierarchy;
+        }
+    }
+}
+
+
+/*
+ * Reusable query context over a contraction hierarchy.
+ * Runs Dijkstra from s and from t at the same time, both following upward edges only, and
+ * the shortest route is the best sum of the two distances over the vertices both reach.
+ * A direction stops once its heap minimum is no better than the best route found so far.
+ * Like QueryEngine, buffers are kept between queries and an instance belongs to one thread.
+ */
+class CHQuery {
+    private final ContractionHierarchy ch;
+    private final QueryEngine.Search fwd;
+    private final QueryEngine.Search bwd;
+
+    // number of vertices removed from the heaps by the last query
+    private int settled;
+
+    // best route of the current query and its highest vertex
+    private int best;
+    private int meet;
+
+    // stack used to unpack shortcuts into road segments
+    private int[] stack = new int[64];
+
+    // route queries between different components are answered without searching when set
+    private Components components;
+
+
+    public CHQuery(ContractionHierarchy ch) {
+        this.ch = ch;
+        fwd = new QueryEngine.Search(ch.V, false, QueueKind.BINARY, 0);
+        bwd = new QueryEngine.Search(ch.V, false, QueueKind.BINARY, 0);
+    }
+
+    public Route shortestPath(int s, int t) {
+        if (s < 1 || s > ch.V || t < 1 || t > ch.V) {
+            throw new IllegalArgumentException("Vertex " + (s < 1 || s > ch.V ? s : t) + " is not in 1.." + ch.V);
+        }
+
+        // no route between different components
+        if (components != null && !components.connected(s, t)) {
+            settled = 0;
+            return new Route(new int[0], Integer.MAX_VALUE);
+        }
+
+        fwd.reset(s);
+        bwd.reset(t);
+        settled = 0;
+        best = Integer.MAX_VALUE;
+        meet = 0;
+
+        while (true) {
+            int topFwd = fwd.h.isEmpty() ? Integer.MAX_VALUE : fwd.dist[fwd.h.peek()];
+            int topBwd = bwd.h.isEmpty() ? Integer.MAX_VALUE : bwd.dist[bwd.h.peek()];
+
+            if (Math.min(topFwd, topBwd) >= best) {
+                break;
+            }
+
+            if (topFwd <= topBwd) {
+                settle(fwd, bwd, fwd.h.remove());
+            } else {
+                settle(bwd, fwd, bwd.h.remove());
+            }
+        }
+
+        if (best == Integer.MAX_VALUE) {
+            return new Route(new int[0], Integer.MAX_VALUE);
+        }
+        return new Route(unpack(), best);
+    }
+
+    // skip the search for routes between different components
+    public void setComponents(Components components) {
+        this.components = components;
+    }
+
+    // settle v in search sr, check it as a meeting point and relax its upward edges
+    private void settle(QueryEngine.Search sr, QueryEngine.Search other, int v) {
+        ++settled;
+        int dv = sr.dist[v];
+
+        if (other.dist[v] != Integer.MAX_VALUE && dv + other.dist[v] < best) {
+            best = dv + other.dist[v];
+            meet = v;
+        }
+
+        for (int i = ch.offsets[v]; i < ch.offsets[v + 1]; ++i) {
+            sr.update(ch.targets[i], dv + ch.weights[i], v);
+        }
+    }
+
+    // road vertices of the best route: both upward paths joined at meet, shortcuts expanded
+    private int[] unpack() {
+        int nf = fwd.depth(meet);
+        int nb = bwd.depth(meet);
+
+        // vertices of the route in the hierarchy, s .. meet .. t
+        int[] up = new int[nf + nb - 1];
+        int k = nf;
+        for (int u = meet; k > 0; u = fwd.parent[u]) {
+            up[--k] = u;
+        }
+        k = nf - 1;
+        for (int u = meet; k < up.length; u = bwd.parent[u]) {
+            up[k++] = u;
+        }
+
+        int[] route = new int[16];
+        int n = 0;
+        route[n++] = up[0];
+
+        // expand each edge depth first, a shortcut a--b via m becomes a--m and m--b
+        for (int i = 1; i < up.length; ++i) {
+            int top = 0;
+            stack = push(stack, top++, up[i]);
+
+            int from = up[i - 1];
+            while (top > 0) {
+                int to = stack[top - 1];
+                int e = ch.edgeIndex(from, to);
+                int m = ch.mids[e];
+
+                if (m == 0) {
+                    if (n == route.length) {
+                        route = java.util.Arrays.copyOf(route, 2 * n);
+                    }
+                    route[n++] = to;
+                    from = to;
+                    --top;
+                } else {
+                    stack = push(stack, top++, m);
+                }
+            }
+        }
+        return java.util.Arrays.copyOf(route, n);
+    }
+
+    private static int[] push(int[] stack, int top, int v) {
+        if (top == stack.length) {
+            stack = java.util.Arrays.copyOf(stack, 2 * top);
+        }
+        stack[top] = v;
+        return stack;
+    }
+
+    // number of vertices settled by the last query
+    public int settledCount() {
+        return settled;
+    }
+}
+
+
+/*
+ * Many-to-many distance tables over a shared read-only CSR graph.
+ * Each source is one one-to-many Dijkstra search (QueryEngine.distances), and the sources are
+ * split across a ForkJoinPool. Every worker thread keeps its own QueryEngine, so the dist/heap
+ * buffers are allocated once per thread and reused for all the sources it handles.
+ */
+class DistanceMatrixEngine {
+    // sources handled by one task before it stops splitting
+    private static final int GRAIN = 4;
+
+    private final CSRGraph g;
+    private final ForkJoinPool pool;
+    private final ThreadLocal<QueryEngine> engines;
+
+
+    public DistanceMatrixEngine(CSRGraph g) {
+        this(g, ForkJoinPool.commonPool());
+    }
+
+    public DistanceMatrixEngine(CSRGraph g, ForkJoinPool pool) {
+        this.g = g;
+        this.pool = pool;
+        this.engines = ThreadLocal.withInitial(() -> new QueryEngine(g));
+    }
+
+    /*
+     * Row-major table of shortest distances in meters: the distance from sources[i] to targets[j]
+     * is at index i * targets.length + j, Integer.MAX_VALUE if not reachable
+     */
+    public int[] distanceMatrix(int[] sources, int[] targets) {
+        int[] out = new int[sources.length * targets.length];
+        pool.invoke(new Rows(sources, targets, out, 0, sources.length));
+        return out;
+    }
+
+    // the rows lo .. hi - 1 of the table, split in halves until small enough
+    private final class Rows extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] sources;
+        private final int[] targets;
+        private final int[] out;
+        private final int lo, hi;
+
+        Rows(int[] sources, int[] targets, int[] out, int lo, int hi) {
+            this.sources = sources;
+            this.targets = targets;
+            this.out = out;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= GRAIN) {
+                QueryEngine engine = engines.get();
+                for (int i = lo; i < hi; ++i) {
+                    engine.distances(sources[i], targets, out, i * targets.length);
+                }
+                return;
+            }
+
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new Rows(sources, targets, out, lo, mid), new Rows(sources, targets, out, mid, hi));
+        }
+    }
+}
+
+
+/*
+ * Bounded cache of shortest path trees keyed by source vertex, for traffic where a few sources
+ * (depots) are queried over and over. A tree is the dist[] and parent[] pair SPT_Dijkstra returns,
+ * 8(V + 1) bytes, computed on a miss by the calling thread's QueryEngine and then answered by array lookup.
+ * When the cache is full, the tree used least recently (LRU) or least often (LFU, ties go to the least
+ * recently used) is evicted.
+ * Trees are only valid for the edges they were computed on. The cache registers with the graph,
+ * so CSRGraph.updateEdge drops the trees the changed segment can affect, and invalidate() drops them all.
+ * Lookups and evictions hold the cache lock but trees are computed outside it, so two threads that
+ * miss on the same source may both compute its tree.
+ */
+class SPTCache {
+    enum Policy {LRU, LFU};
+
+    private static final class Entry {
+        final SPTResult tree;
+
+        // lookups answered by this tree, for LFU
+        long uses = 1;
+
+        Entry(SPTResult tree) {
+            this.tree = tree;
+        }
+    }
+
+    private final CSRGraph g;
+    private final int capacity;
+    private final Policy policy;
+    private final ThreadLocal<QueryEngine> engines;
+
+    // kept in access order, so the first entry is the least recently used
+    private final java.util.LinkedHashMap<Integer, Entry> trees = new java.util.LinkedHashMap<>(16, 0.75f, true);
+
+    // number of invalidations, a tree whose computation started before the latest one is not stored
+    private long generation;
+
+    private long hits, misses, evictions;
+
+    // trees dropped because an edge update could change them
+    private long dropped;
+
+
+    public SPTCache(CSRGraph g, int capacity, Policy policy) {
+        this(g, capacity, policy, null);
+    }
+
+    // same as above, with the searches of the misses recorded in metrics unless it is null
+    public SPTCache(CSRGraph g, int capacity, Policy policy, QueryMetrics metrics) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Cache capacity must be at least one tree, not " + capacity);
+        }
+        this.g = g;
+        this.capacity = capacity;
+        this.policy = policy;
+        this.engines = ThreadLocal.withInitial(() -> new QueryEngine(g, QueueKind.BINARY, metrics));
+        g.addCache(this);
+    }
+
+    // shortest path tree from s, the same dist[] and parent[] SPT_Dijkstra gives; callers must not modify it
+    public SPTResult tree(int s) {
+        long started;
+        synchronized (this) {
+            Entry e = trees.get(s);
+            if (e != null) {
+                ++e.uses;
+                ++hits;
+                return e.tree;
+            }
+            ++misses;
+            started = generation;
+        }
+
+        QueryEngine engine = engines.get();
+        engine.shortestPathTree(s);
+        SPTResult tree = engine.toResult();
+
+        synchronized (this) {
+            if (started == generation && !trees.containsKey(s)) {
+                if (trees.size() == capacity) {
+                    evict();
+                }
+                trees.put(s, new Entry(tree));
+            }
+        }
+        return tree;
+    }
+
+    // distance in meters from s to t, Integer.MAX_VALUE if not reachable
+    public int distance(int s, int t) {
+        check(t);
+        return tree(s).dist[t];
+    }
+
+    // shortest route from s to t, read from the tree of s
+    public Route route(int s, int t) {
+        check(t);
+        SPTResult tree = tree(s);
+        if (tree.dist[t] == Integer.MAX_VALUE) {
+            return new Route(new int[0], Integer.MAX_VALUE);
+        }
+
+        int n = 1;
+        for (int u = t; u != s; u = tree.parent[u]) {
+            ++n;
+        }
+        int[] p = new int[n];
+        for (int u = t; n > 0; u = tree.parent[u]) {
+            p[--n] = u;
+        }
+        return new Route(p, tree.dist[t]);
+    }
+
+    // drop every tree, for changes to the graph that don't go through CSRGraph.updateEdge
+    public synchronized void invalidate() {
+        dropped += trees.size();
+        trees.clear();
+        ++generation;
+    }
+
+    /*
+     * Road segment u - v changed length from old to wgt. The same tests as DynamicSPT.edgeChanged
+     * tell which trees it can change: a shorter segment only when it brings one of its ends closer,
+     * a longer one only when it was the tree edge to one of its ends. Only those trees are dropped.
+     */
+    synchronized void edgeChanged(int u, int v, int old, int wgt) {
+        ++generation;
+        java.util.Iterator<Entry> it = trees.values().iterator();
+        while (it.hasNext()) {
+            if (affected(it.next().tree, u, v, old, wgt)) {
+                it.remove();
+                ++dropped;
+            }
+        }
+    }
+
+    private static boolean affected(SPTResult tree, int u, int v, int old, int wgt) {
+        int[] dist = tree.dist;
+        if (wgt < old) {
+            return (dist[u] != Integer.MAX_VALUE && dist[u] + wgt < dist[v])
+                || (dist[v] != Integer.MAX_VALUE && dist[v] + wgt < dist[u]);
+        }
+        if (wgt > old) {
+            return (tree.parent[v] == u && dist[v] == dist[u] + old)
+                || (tree.parent[u] == v && dist[u] == dist[v] + old);
+        }
+        return false;
+    }
+
+    private void check(int v) {
+        if (v < 1 || v > g.V) {
+            throw new IllegalArgumentException("Vertex " + v + " is not in 1.." + g.V);
+        }
+    }
+
+    // called with the lock held and the cache full
+    private void evict() {
+        java.util.Iterator<Entry> it = trees.values().iterator();
+
+        if (policy == Policy.LFU) {
+            // the first entry with the fewest uses is also the least recently used of those
+            Entry victim = null;
+            for (Entry e : trees.values()) {
+                if (victim == null || e.uses < victim.uses) {
+                    victim = e;
+                }
+            }
+            while (it.next() != victim) {
+            }
+        } else {
+            it.next();
+        }
+        it.remove();
+        ++evictions;
+    }
+
+    public synchronized int size() {
+        return trees.size();
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    public synchronized long dropped() {
+        return dropped;
+    }
+
+    // memory held by the cached dist[] and parent[] arrays
+    public synchronized long bytes() {
+        return trees.size() * 8L * (g.V + 1);
+    }
+
+    @Override
+    public synchronized String toString() {
+        long lookups = hits + misses;
+        return String.format("%s cache: %d of %d trees (%d KB), %d hits, %d misses, %.1f%% hit rate, %d evictions, %d dropped by updates",
+                             policy, trees.size(), capacity, bytes() / 1024, hits, misses,
+                             lookups == 0 ? 0.0 : 100.0 * hits / lookups, evictions, dropped);
+    }
+}
+
+
+/*
+ * Delta-stepping single-source shortest paths (Meyer and Sanders) over a shared CSR graph.
+ * Tentative distances are kept in buckets of width delta. All vertices of the lowest
+ * non-empty bucket are relaxed together on a ForkJoinPool, first along their light edges
+ * (wgt <= delta) until the bucket stays empty, then once along their heavy edges.
+ * dist[] and parent[] of a vertex are packed in one long, high half dist and low half parent,
+ * so both change together with a single compareAndSet.
+ * dist[] is the same as SPT_Dijkstra's. parent[] is a valid shortest path tree, which is the
+ * same as SPT_Dijkstra's wherever the shortest path to a vertex is unique.
+ */
+class DeltaStepping {
+    // frontier vertices relaxed by one task before it stops splitting
+    private static final int GRAIN = 256;
+
+    private final CSRGraph g;
+    private final ForkJoinPool pool;
+    private final int delta;
+
+    // rows of g with the light edges first, light edges of v are offsets[v] .. lightEnd[v] - 1
+    private final int[] targets;
+    private final int[] weights;
+    private final int[] lightEnd;
+
+    // circular buckets, bucket i is at i % buckets.length, each with its number of entries
+    private final int[][] buckets;
+    private final int[] bucketSize;
+
+    // state[v] = dist[v] << 32 | parent[v]
+    private AtomicLongArray state;
+
+    // vertices improved by each task of the last parallel relaxation
+    private int[][] found = new int[0][];
+    private int[] foundCount = new int[0];
+
+    public DeltaStepping(CSRGraph g, int delta) {
+        this(g, delta, ForkJoinPool.commonPool());
+    }
+
+    public DeltaStepping(CSRGraph g, int delta, ForkJoinPool pool) {
+        if (delta < 1) {
+            throw new IllegalArgumentException("Bucket width must be at least 1, was " + delta);
+        }
+        this.g = g;
+        this.delta = delta;
+        this.pool = pool;
+
+        // split every row into light and heavy edges, order within each part is kept
+        targets = new int[g.targets.length];
+        weights = new int[g.weights.length];
+        lightEnd = new int[g.V + 1];
+        int maxWeight = 0;
+        for (int v = 1; v <= g.V; ++v) {
+            int k = g.offsets[v];
+            for (int heavy = 0; heavy < 2; ++heavy) {
+                for (int i = g.offsets[v]; i < g.offsets[v + 1]; ++i) {
+                    if ((g.weights[i] > delta) == (heavy == 1)) {
+                        targets[k] = g.targets[i];
+                        weights[k++] = g.weights[i];
+                    }
+                }
+                if (heavy == 0) {
+                    lightEnd[v] = k;
+                }
+            }
+            for (int i = g.offsets[v]; i < g.offsets[v + 1]; ++i) {
+                maxWeight = Math.max(maxWeight, g.weights[i]);
+            }
+        }
+
+        // a relaxation from bucket i lands at most maxWeight / delta + 1 buckets further on
+        buckets = new int[maxWeight / delta + 2][16];
+        bucketSize = new int[buckets.length];
+    }
+
+    // bucket width that keeps the light phases short: the average edge weight
+    public static int defaultDelta(CSRGraph g) {
+        long sum = 0;
+        for (int i = 0; i < g.weights.length; ++i) {
+            sum += g.weights[i];
+        }
+        return (int) Math.max(1, sum / Math.max(1, g.weights.length));
+    }
+
+    public int delta() {
+        return delta;
+    }
+
+    public SPTResult shortestPathTree(int s) {
+        int V = g.V;
+        state = new AtomicLongArray(V + 1);
+        for (int v = 1; v <= V; ++v) {
+            state.set(v, (long) Integer.MAX_VALUE << 32);
+        }
+        state.set(s, 0L);
+
+        // frontier[] holds each vertex once, inPhase[v] / inBucket[v] say when it was last added
+        int[] frontier = new int[V];
+        int[] settled = new int[V];
+        int[] inPhase = new int[V + 1];
+        int[] inBucket = new int[V + 1];
+        java.util.Arrays.fill(inBucket, -1);
+        java.util.Arrays.fill(bucketSize, 0);
+
+        push(s, 0);
+        long queued = 1;
+        int phase = 0;
+
+        for (int i = 0; queued > 0; ++i) {
+            int b = i % buckets.length;
+            int settledCount = 0;
+
+            // light edges, repeated while relaxations put vertices back into bucket i
+            while (bucketSize[b] > 0) {
+                ++phase;
+                int n = 0;
+                int size = bucketSize[b];
+                bucketSize[b] = 0;
+                queued -= size;
+                for (int k = 0; k < size; ++k) {
+                    int v = buckets[b][k];
+                    // skip entries left behind when v moved to a lower bucket, and duplicates
+                    if (dist(v) / delta != i || inPhase[v] == phase) {
+                        continue;
+                    }
+                    inPhase[v] = phase;
+                    frontier[n++] = v;
+                    if (inBucket[v] != i) {
+                        inBucket[v] = i;
+                        settled[settledCount++] = v;
+                    }
+                }
+                queued += relax(frontier, n, false);
+            }
+
+            // heavy edges of everything settled in bucket i, these always land in later buckets
+            queued += relax(settled, settledCount, true);
+        }
+
+        int[] dist = new int[V + 1];
+        int[] parent = new int[V + 1];
+        int edges = 0;
+        for (int v = 1; v <= V; ++v) {
+            long x = state.get(v);
+            dist[v] = (int) (x >>> 32);
+            parent[v] = (int) x;
+            if (parent[v] != 0) {
+                ++edges;
+            }
+        }
+        dist[0] = 0;
+        state = null;
+        return new SPTResult(s, dist, parent, edges);
+    }
+
+    private int dist(int v) {
+        return (int) (state.get(v) >>> 32);
+    }
+
+    private void push(int v, int d) {
+        int b = (d / delta) % buckets.length;
+        if (bucketSize[b] == buckets[b].length) {
+            buckets[b] = java.util.Arrays.copyOf(buckets[b], 2 * buckets[b].length);
+        }
+        buckets[b][bucketSize[b]++] = v;
+    }
+
+    /*
+     * Relax the light or heavy edges of vertices[0 .. n - 1], split across the pool,
+     * then put every improved vertex in its bucket. Returns the number of bucket entries added.
+     */
+    private int relax(int[] vertices, int n, boolean heavy) {
+        int tasks = (n + GRAIN - 1) / GRAIN;
+        if (tasks > found.length) {
+            found = java.util.Arrays.copyOf(found, tasks);
+            foundCount = new int[tasks];
+        }
+        for (int t = 0; t < tasks; ++t) {
+            if (found[t] == null) {
+                found[t] = new int[GRAIN];
+            }
+            foundCount[t] = 0;
+        }
+
+        // a single task is run right here instead of going through the pool
+        Relax all = new Relax(vertices, n, heavy, 0, tasks);
+        if (tasks == 1) {
+            all.compute();
+        } else if (tasks > 1) {
+            pool.invoke(all);
+        }
+
+        int added = 0;
+        for (int t = 0; t < tasks; ++t) {
+            for (int k = 0; k < foundCount[t]; ++k) {
+                int v = found[t][k];
+                push(v, dist(v));
+            }
+            added += foundCount[t];
+        }
+        return added;
+    }
+
+    // relaxes the vertices of tasks lo .. hi - 1, GRAIN vertices per task
+    private final class Relax extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] vertices;
+        private final int n;
+        private final boolean heavy;
+        private final int lo, hi;
+
+        Relax(int[] vertices, int n, boolean heavy, int lo, int hi) {
+            this.vertices = vertices;
+            this.n = n;
+            this.heavy = heavy;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Relax(vertices, n, heavy, lo, mid), new Relax(vertices, n, heavy, mid, hi));
+                return;
+            }
+
+            int[] out = found[lo];
+            int count = 0;
+            for (int k = lo * GRAIN; k < Math.min(n, (lo + 1) * GRAIN); ++k) {
+                int u = vertices[k];
+                int du = dist(u);
+                int from = heavy ? lightEnd[u] : g.offsets[u];
+                int to = heavy ? g.offsets[u + 1] : lightEnd[u];
+                for (int i = from; i < to; ++i) {
+                    int v = targets[i];
+                    int dv = du + weights[i];
+                    long x = state.get(v);
+
+                    // retry while another thread changed v but our distance is still shorter
+                    while ((int) (x >>> 32) > dv) {
+                        if (state.compareAndSet(v, x, (long) dv << 32 | u)) {
+                            if (count == out.length) {
+                                out = java.util.Arrays.copyOf(out, 2 * out.length);
+                            }
+                            out[count++] = v;
+                            break;
+                        }
+                        x = state.get(v);
+                    }
+                }
+            }
+            found[lo] = out;
+            foundCount[lo] = count;
+        }
+    }
+}
+
+
+/*
+ * Fast loader for the edge list text format (first line "V E", then one "u v wgt" line per edge).
+ * The file is memory-mapped with FileChannel.map and the integers are parsed straight from
+ * the mapped bytes, so no String, String[] or regex is created per line and nothing is echoed.
+ * Files larger than 2 GB are mapped as a sequence of windows.
+ */
+class EdgeListLoader {
+    // size of each mapped window of the file
+    private static final long WINDOW = 1L << 30;
+
+    private FileChannel channel;
+
+    // current mapped window and the file offset it starts from
+    private MappedByteBuffer buf;
+    private long windowStart;
+    private long fileSize;
+
+    // statistics of the last load, for the MB/s metric
+    private long bytesRead;
+    private long loadNanos;
+
+
+    public CSRGraph load(String graphFile) throws IOException {
+        int u, v, e;
+        long startTime = System.nanoTime();
+
+        channel = FileChannel.open(Paths.get(graphFile), StandardOpenOption.READ);
+        try {
+            fileSize = channel.size();
+            windowStart = 0;
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(WINDOW, fileSize));
+
+            int V = nextInt();
+            int E = nextInt();
+
+            int[] from = new int[E];
+            int[] to = new int[E];
+            int[] wgts = new int[E];
+
+            for (e = 0; e < E; ++e) {
+                u = nextInt();
+                v = nextInt();
+                if (u < 1 || u > V || v < 1 || v > V) {
+                    throw new IOException("Edge " + (e + 1) + " has vertex out of range 1.." + V + ": " + u + " " + v);
+                }
+                from[e] = u;
+                to[e] = v;
+                wgts[e] = nextInt();
+            }
+
+            CSRGraph g = new CSRGraph(V, E, from, to, wgts);
+
+            bytesRead = fileSize;
+            loadNanos = System.nanoTime() - startTime;
+            return g;
+        } finally {
+            channel.close();
+            buf = null;
+        }
+    }
+
+    // next byte of the file, or -1 at the end of the file
+    private int nextByte() throws IOException {
+        if (!buf.hasRemaining()) {
+            windowStart += buf.capacity();
+            if (windowStart >= fileSize) {
+                return -1;
+            }
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(WINDOW, fileSize - windowStart));
+        }
+        return buf.get();
+    }
+
+    // skip whitespace and parse the next non-negative integer directly from the bytes
+    private int nextInt() throws IOException {
+        int c = nextByte();
+        while (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+            c = nextByte();
+        }
+
+        if (c < '0' || c > '9') {
+            throw new IOException(c == -1 ? "Unexpected end of graph file"
+                                          : "Unexpected character '" + (char) c + "' in graph file");
+        }
+
+        long n = 0;
+        while (c >= '0' && c <= '9') {
+            n = n * 10 + (c - '0');
+            if (n > Integer.MAX_VALUE) {
+                throw new IOException("Integer too large in graph file");
+            }
+            c = nextByte();
+        }
+        return (int) n;
+    }
+
+    // time taken by the last load in milliseconds
+    public double loadMillis() {
+        return loadNanos / 1_000_000.0;
+    }
+
+    // parsing throughput of the last load in MB/s
+    public double megabytesPerSecond() {
+        return (bytesRead / (1024.0 * 1024.0)) / (loadNanos / 1_000_000_000.0);
+    }
+
+    public void printLoadMetrics() {
+        System.out.printf("Loaded %d bytes in %.3f ms (%.1f MB/s)\n", bytesRead, loadMillis(), megabytesPerSecond());
+    }
+}
+
+
+/*
+ * Binary snapshot of a CSR graph, written once from a parsed graph and opened later
+ * without any text parsing or row building. Layout (little-endian ints):
+ *    header  - magic "CSRG", format version, V, E
+ *    offsets - V + 2 ints
+ *    targets - 2E ints
+ *    weights - 2E ints
+ * The file is opened read-only with FileChannel.map and each array is filled with one bulk
+ * copy out of the mapping, so there is no read() buffering, but every JVM still holds its own
+ * copy of the arrays on the heap. Offsets and targets are range checked during that copy.
+ */
+class GraphSnapshot {
+    // "CSRG" in ASCII
+    private static final int MAGIC = 0x43535247;
+    private static final int VERSION = 1;
+    private static final int HEADER_INTS = 4;
+
+    // largest region mapped at once, a multiple of 4 so no int is split between regions
+    private static final long WINDOW = 1L << 30;
+
+
+    // write the CSR arrays of g to file
+    public static void write(CSRGraph g, String file) throws IOException {
+        try (FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+                                               StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+
+            buf.putInt(MAGIC).putInt(VERSION).putInt(g.V).putInt(g.E);
+            writeInts(ch, buf, g.offsets);
+            writeInts(ch, buf, g.targets);
+            writeInts(ch, buf, g.weights);
+
+            buf.flip();
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+        }
+    }
+
+    // append the array to buf, flushing buf to the channel whenever it is full
+    static void writeInts(FileChannel ch, ByteBuffer buf, int[] a) throws IOException {
+        int i = 0;
+        while (i < a.length) {
+            int n = Math.min(buf.remaining() / 4, a.length - i);
+            buf.asIntBuffer().put(a, i, n);
+            buf.position(buf.position() + 4 * n);
+            i += n;
+
+            if (buf.remaining() < 4) {
+                buf.flip();
+                while (buf.hasRemaining()) {
+                    ch.write(buf);
+                }
+                buf.clear();
+            }
+        }
+    }
+
+    // open a snapshot written by write()
+    public static CSRGraph open(String file) throws IOException {
+        try (FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < 4L * HEADER_INTS) {
+                throw new IOException(file + " is too small to be a graph snapshot");
+            }
+
+            IntBuffer header = ch.map(FileChannel.MapMode.READ_ONLY, 0, 4L * HEADER_INTS)
+                                 .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            if (header.get(0) != MAGIC || header.get(1) != VERSION) {
+                throw new IOException(file + " is not a version " + VERSION + " graph snapshot");
+            }
+
+            int V = header.get(2);
+            int E = header.get(3);
+            if (V < 0 || E < 0 || size != 4L * (HEADER_INTS + (V + 2L) + 4L * E)) {
+                throw new IOException(file + " has a size that does not match V = " + V + ", E = " + E);
+            }
+
+            long pos = 4L * HEADER_INTS;
+            int[] offsets = readInts(ch, pos, V + 2, 0, 2 * E, true);
+            pos += 4L * (V + 2);
+            int[] targets = readInts(ch, pos, 2 * E, 1, V, false);
+            pos += 8L * E;
+            int[] weights = readInts(ch, pos, 2 * E);
+
+            if (offsets == null || offsets[0] != 0 || offsets[V + 1] != 2 * E) {
+                throw new IOException(file + " has corrupt row offsets");
+            }
+            if (targets == null) {
+                throw new IOException(file + " has an edge to a vertex outside 1.." + V);
+            }
+
+            return new CSRGraph(offsets, targets, weights);
+        }
+    }
+
+    // map n ints starting from byte position pos and copy them into a new array
+    static int[] readInts(FileChannel ch, long pos, int n) throws IOException {
+        return readInts(ch, pos, n, Integer.MIN_VALUE, Integer.MAX_VALUE, false);
+    }
+
+    // same, checking each window as it is copied: every value in lo..hi and, when ascending,
+    // none smaller than the one before it. null if a value breaks either rule
+    static int[] readInts(FileChannel ch, long pos, int n, int lo, int hi, boolean ascending) throws IOException {
+        int[] a = new int[n];
+        int i = 0;
+        int prev = lo;
+        while (i < n) {
+            long len = Math.min(WINDOW, 4L * (n - i));
+            IntBuffer ints = ch.map(FileChannel.MapMode.READ_ONLY, pos, len)
+                               .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            int k = ints.remaining();
+            ints.get(a, i, k);
+            for (int j = i; j < i + k; ++j) {
+                if (a[j] < lo || a[j] > hi || (ascending && a[j] < prev)) {
+                    return null;
+                }
+                prev = a[j];
+            }
+            i += k;
+            pos += len;
+        }
+        return a;
+    }
+}
+
+
+/*
+ * Times MST_Prim and SPT_Dijkstra on every priority queue against the same graph.
+ * Run with: java QueueBenchmark <graph file> [source] [rounds]
+ * Results of each queue are checked against the binary heap.
+ */
+class QueueBenchmark {
+    public static void main(String[] args) throws IOException {
+        String fname = args.length > 0 ? args[0] : "gibraltar.txt";
+        int s = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        CSRGraph g = fname.endsWith(".csr") ? GraphSnapshot.open(fname) : new EdgeListLoader().load(fname);
+        g.setTrace(Trace.OFF);
+
+        g.setQueue(QueueKind.BINARY);
+        SPTResult expectedSpt = g.SPT_Dijkstra(s);
+        MSTResult expectedMst = g.MST_Prim(s);
+
+        System.out.printf("%d vertices, %d edges, source %d, best of %d rounds\n", g.V, g.E, s, rounds);
+        System.out.printf("%-8s %12s %12s\n", "queue", "SPT ms", "MST ms");
+
+        for (QueueKind kind : QueueKind.values()) {
+            g.setQueue(kind);
+
+            double sptMillis = Double.MAX_VALUE;
+            for (int r = 0; r < rounds; ++r) {
+                long startTime = System.nanoTime();
+                SPTResult spt = g.SPT_Dijkstra(s);
+                sptMillis = Math.min(sptMillis, (System.nanoTime() - startTime) / 1_000_000.0);
+                if (!java.util.Arrays.equals(spt.dist, expectedSpt.dist)) {
+                    throw new IllegalStateException(kind + " queue gives different shortest distances");
+                }
+            }
+
+            // radix heap and buckets need monotone keys, MST_Prim falls back to the binary heap for them
+            double mstMillis = Double.NaN;
+            if (!kind.monotone()) {
+                mstMillis = Double.MAX_VALUE;
+                for (int r = 0; r < rounds; ++r) {
+                    long startTime = System.nanoTime();
+                    MSTResult mst = g.MST_Prim(s);
+                    mstMillis = Math.min(mstMillis, (System.nanoTime() - startTime) / 1_000_000.0);
+                    if (mst.weight != expectedMst.weight || mst.edges != expectedMst.edges) {
+                        throw new IllegalStateException(kind + " queue gives a different MST weight");
+                    }
+                }
+            }
+
+            System.out.printf("%-8s %12.3f %12s\n", kind.name().toLowerCase(), sptMillis,
+                              Double.isNaN(mstMillis) ? "-" : String.format("%.3f", mstMillis));
+        }
+    }
+}
+
+
+/*
+ * Reproducible checks of the edge updates, the scripted ones with distances worked out by hand:
+ *    1. DynamicSPT on the linked Graph through a fixed sequence of longer, shorter, deleted and
+ *       inserted segments on a 7 vertex graph, covering each repair case once
+ *    2. SPTCache over a CSRGraph through the length changes of the same sequence, checking which
+ *       trees are dropped and that the trees served afterwards match SPT_Dijkstra
+ *    3. a BUCKET QueryEngine kept across an update longer than any road it was built for
+ *    4. the same seeded random updates as --updates, plus random length changes of the CSRGraph
+ *       seen by BINARY and BUCKET QueryEngines and a cache, against SPT_Dijkstra after each one
+ * Run with: java DynamicUpdateCheck [graph file] [updates]
+ */
+class DynamicUpdateCheck {
+    private static final int INF = Integer.MAX_VALUE;
+
+    // 1 - 2 - 4 - 5 with the shortcut 1 - 3 - 2 and the detour 3 - 4, and 6 - 7 apart from the rest
+    private static final String GRAPH = "7 7\n1 2 4\n1 3 1\n3 2 2\n2 4 5\n3 4 8\n4 5 3\n6 7 1\n";
+
+    public static void main(String[] args) throws IOException {
+        String fname = args.length > 0 ? args[0] : "gibraltar.txt";
+        int n = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+        File file = File.createTempFile("dynamic", ".txt");
+        file.deleteOnExit();
+        try (PrintWriter w = new PrintWriter(new FileWriter(file))) {
+            w.print(GRAPH);
+        }
+
+        checkLinked(file.getPath());
+        checkCache(file.getPath());
+        checkLongerRoad(fname);
+        checkRandom(fname, n);
+        System.out.println("All edge update checks passed");
+    }
+
+    private static void checkLinked(String file) throws IOException {
+        Graph g = quietly(() -> new Graph(file));
+        g.setTrace(Trace.OFF);
+        Graph.DynamicSPT tree = g.track(1);
+
+        expect(tree.toResult(), 0, 3, 1, 8, 11, INF, INF);
+
+        // longer tree edge to 2, the subtree 2, 4, 5 is detached and reattached through 1 - 2
+        g.updateEdge(3, 2, 6);
+        expect(tree.toResult(), 0, 4, 1, 9, 12, INF, INF);
+
+        // longer tree edge to 3, now as long as the way round through 2
+        g.updateEdge(1, 3, 10);
+        expect(tree.toResult(), 0, 4, 10, 9, 12, INF, INF);
+
+        // shorter segment that improves neither end
+        g.updateEdge(3, 4, 1);
+        expect(tree.toResult(), 0, 4, 10, 9, 12, INF, INF);
+
+        // deleted tree edge, 4 and 5 are reached through 3 instead
+        g.deleteEdge(2, 4);
+        expect(tree.toResult(), 0, 4, 10, 11, 14, INF, INF);
+
+        // deleted tree edge that cuts 5 off
+        g.deleteEdge(4, 5);
+        expect(tree.toResult(), 0, 4, 10, 11, INF, INF, INF);
+
+        // new segment between two unreachable vertices, then one joining them all up
+        g.insertEdge(5, 6, 2);
+        expect(tree.toResult(), 0, 4, 10, 11, INF, INF, INF);
+        g.insertEdge(2, 5, 3);
+        expect(tree.toResult(), 0, 4, 10, 11, 7, 9, 10);
+
+        if (g.updateEdge(1, 7, 1) || g.deleteEdge(1, 7)) {
+            throw new IllegalStateException("Update of the missing segment 1 - 7 succeeded");
+        }
+        expectRejected(() -> g.updateEdge(1, 8, 1));
+        expectRejected(() -> g.insertEdge(0, 2, 1));
+        expectRejected(() -> g.deleteEdge(2, 8));
+        expectRejected(() -> g.updateEdge(1, 2, -1));
+        expectRejected(() -> g.insertEdge(1, 7, -5));
+        expect(tree.toResult(), 0, 4, 10, 11, 7, 9, 10);
+        System.out.println("DynamicSPT repairs match the scripted distances");
+    }
+
+    private static void checkCache(String file) throws IOException {
+        CSRGraph g = new EdgeListLoader().load(file);
+        g.setTrace(Trace.OFF);
+        SPTCache cache = new SPTCache(g, 4, SPTCache.Policy.LRU);
+        cache.tree(1);
+        cache.tree(6);
+
+        // tree edge of the tree from 1, the tree from 6 can't be changed by it
+        g.updateEdge(3, 2, 6);
+        expectDropped(cache, 1);
+        expect(cache.tree(1), 0, 4, 1, 9, 12, INF, INF);
+
+        g.updateEdge(1, 3, 10);
+        expectDropped(cache, 2);
+        expect(cache.tree(1), 0, 4, 10, 9, 12, INF, INF);
+
+        // shorter but improving neither end, and longer but not a tree edge: both trees stay
+        g.updateEdge(3, 4, 1);
+        g.updateEdge(3, 2, 7);
+        expectDropped(cache, 2);
+        expect(cache.tree(1), 0, 4, 10, 9, 12, INF, INF);
+
+        // shorter and improving 3, which then pulls 4 and 5 closer through 3 - 4
+        g.updateEdge(1, 3, 2);
+        expectDropped(cache, 3);
+        expect(cache.tree(1), 0, 4, 2, 3, 6, INF, INF);
+        expect(g.SPT_Dijkstra(1), 0, 4, 2, 3, 6, INF, INF);
+
+        // the tree from 6 was never dropped, so it was only computed once
+        if (cache.tree(6).dist[7] != 1 || cache.misses() != 5) {
+            throw new IllegalStateException("Tree from 6 was recomputed, " + cache);
+        }
+        if (g.updateEdge(1, 7, 1) != -1) {
+            throw new IllegalStateException("Update of the missing segment 1 - 7 succeeded");
+        }
+        System.out.println("SPTCache drops exactly the trees the scripted updates change");
+    }
+
+    // the bucket queue of an engine only spans the longest road it was built for
+    private static void checkLongerRoad(String fname) throws IOException {
+        CSRGraph g = new EdgeListLoader().load(fname);
+        g.setTrace(Trace.OFF);
+        QueryEngine engine = new QueryEngine(g, QueueKind.BUCKET);
+        engine.shortestPathTree(1);
+        engine.shortestPath(1, g.V, SearchMode.BIDIRECTIONAL);
+
+        int t = g.targets[g.offsets[1]];
+        g.updateEdge(1, t, g.maxWeight + 10000);
+
+        engine.shortestPathTree(1);
+        if (!java.util.Arrays.equals(g.SPT_Dijkstra(1).dist, 1, g.V + 1, engine.toResult().dist, 1, g.V + 1)) {
+            throw new IllegalStateException("BUCKET QueryEngine tree from 1 differs from SPT_Dijkstra after 1 - " + t
+                                            + " became " + g.maxWeight + "m");
+        }
+        Route route = engine.shortestPath(1, g.V, SearchMode.BIDIRECTIONAL);
+        if (route.length != g.SPT_Dijkstra(1).dist[g.V]) {
+            throw new IllegalStateException("BUCKET bidirectional route 1 - " + g.V + " is " + route.length + "m");
+        }
+        System.out.println("BUCKET QueryEngine follows a road longer than it was built for");
+    }
+
+    // the seeded random updates of --updates on the linked graph, and length changes on the cache
+    private static void checkRandom(String fname, int n) throws IOException {
+        Graph linked = quietly(() -> new Graph(fname));
+        linked.setTrace(Trace.OFF);
+        Graph.DynamicSPT tree = linked.track(1);
+
+        CSRGraph g = new EdgeListLoader().load(fname);
+        g.setTrace(Trace.OFF);
+        QueryEngine engine = new QueryEngine(g);
+        QueryEngine bucketEngine = new QueryEngine(g, QueueKind.BUCKET);
+        SPTCache cache = new SPTCache(g, 8, SPTCache.Policy.LRU);
+
+        java.util.Random random = new java.util.Random(42);
+        java.util.ArrayDeque<int[]> closed = new java.util.ArrayDeque<>();
+
+        for (int i = 0; i < n; ++i) {
+            SPTResult current = tree.toResult();
+            int v = 1 + random.nextInt(g.V);
+            int p = current.parent[v];
+            int kind = random.nextInt(5);
+
+            if (p != 0 && kind < 2) {
+                int old = current.dist[v] - current.dist[p];
+                linked.updateEdge(p, v, Math.max(1, old * (50 + random.nextInt(151)) / 100));
+            } else if (p != 0 && kind == 2) {
+                int old = current.dist[v] - current.dist[p];
+                linked.deleteEdge(p, v);
+                closed.add(new int[] {p, v, old});
+            } else if (!closed.isEmpty() && kind == 3) {
+                int[] e = closed.poll();
+                linked.insertEdge(e[0], e[1], e[2]);
+            } else {
+                linked.insertEdge(v, 1 + random.nextInt(g.V), 1 + random.nextInt(1000));
+            }
+            if (!java.util.Arrays.equals(linked.SPT_Dijkstra(1).dist, 1, g.V + 1, tree.toResult().dist, 1, g.V + 1)) {
+                throw new IllegalStateException("Repaired tree differs from SPT_Dijkstra after update " + (i + 1));
+            }
+
+            // length change of a random segment of the CSR graph, seen by the next search of the reused engine
+            int u = 1 + random.nextInt(g.V);
+            if (g.offsets[u] < g.offsets[u + 1]) {
+                int k = g.offsets[u] + random.nextInt(g.offsets[u + 1] - g.offsets[u]);
+                g.updateEdge(u, g.targets[k], Math.max(1, g.weights[k] * (50 + random.nextInt(151)) / 100));
+            }
+            int r = 1 + random.nextInt(g.V);
+            engine.shortestPathTree(r);
+            if (!java.util.Arrays.equals(g.SPT_Dijkstra(r).dist, 1, g.V + 1, engine.toResult().dist, 1, g.V + 1)) {
+                throw new IllegalStateException("QueryEngine tree from " + r + " differs from SPT_Dijkstra after update " + (i + 1));
+            }
+            bucketEngine.shortestPathTree(r);
+            if (!java.util.Arrays.equals(g.SPT_Dijkstra(r).dist, 1, g.V + 1, bucketEngine.toResult().dist, 1, g.V + 1)) {
+                throw new IllegalStateException("BUCKET QueryEngine tree from " + r + " differs from SPT_Dijkstra after update " + (i + 1));
+            }
+
+            // and by every tree the cache holds, the ones it kept as well as the ones it computed again
+            for (int s = 1; s <= 8; ++s) {
+                if (!java.util.Arrays.equals(g.SPT_Dijkstra(s).dist, 1, g.V + 1, cache.tree(s).dist, 1, g.V + 1)) {
+                    throw new IllegalStateException("Cached tree from " + s + " is stale after update " + (i + 1));
+                }
+            }
+        }
+        System.out.printf("%d random updates on %s: repaired trees, CSR searches and cached trees match SPT_Dijkstra, %s\n", n, fname, cache);
+    }
+
+    private static void expect(SPTResult tree, int... dist) {
+        for (int v = 1; v <= dist.length; ++v) {
+            if (tree.dist[v] != dist[v - 1]) {
+                throw new IllegalStateException("dist[" + v + "] is " + tree.dist[v] + " instead of " + dist[v - 1]
+                                                + " in " + java.util.Arrays.toString(tree.dist));
+            }
+        }
+    }
+
+    private static void expectRejected(Runnable update) {
+        try {
+            update.run();
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        throw new IllegalStateException("Update with a vertex outside the graph or a negative length was accepted");
+    }
+
+    private static void expectDropped(SPTCache cache, long dropped) {
+        if (cache.dropped() != dropped) {
+            throw new IllegalStateException(cache.dropped() + " trees dropped instead of " + dropped + ", " + cache);
+        }
+    }
+
+    interface Load<T> {
+        T run() throws IOException;
+    }
+
+    // the linked Graph prints every edge while loading, thrown away here
+    private static <T> T quietly(Load<T> load) throws IOException {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            return load.run();
+        } finally {
+            System.setOut(out);
+        }
+    }
+}
+
+/*
+ * Benchmark suite for graph loading, MST_Prim, SPT_Dijkstra and the QueryEngine searches on
+ * the adjacency lists and the CSR arrays, over gibraltar.txt and synthetic road grids of
+ * increasing size. The same harness as GraphBenchmark in GraphSolution.java: every benchmark
+ * is warmed up, then timed per call over several measurement iterations, reporting throughput,
+ * latency percentiles, bytes allocated per call (from the thread allocation counter) and GC runs.
+ * Everything runs at Trace.OFF and the lines printed while loading go to a null stream.
+ * Run with: java GibraltarBenchmark [--warmup=<iterations>] [--iterations=<n>] [--time=<ms per iteration>] [graph files]
+ */
+class GibraltarBenchmark {
+    private static int warmup = 3;
+    private static int iterations = 5;
+    private static long iterationMillis = 500;
+
+    // results are stored here so the JIT can't drop the calls
+    static volatile Object sink;
+
+    interface Op {
+        Object run() throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        java.util.List<String> files = new java.util.ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--warmup=")) {
+                warmup = Integer.parseInt(arg.substring("--warmup=".length()));
+            } else if (arg.startsWith("--iterations=")) {
+                iterations = Integer.parseInt(arg.substring("--iterations=".length()));
+            } else if (arg.startsWith("--time=")) {
+                iterationMillis = Long.parseLong(arg.substring("--time=".length()));
+            } else {
+                files.add(arg);
+            }
+        }
+        if (files.isEmpty()) {
+            files.add("gibraltar.txt");
+            for (int side : new int[] {32, 100, 316}) {
+                files.add(syntheticGrid(side));
+            }
+        }
+
+        System.out.printf("%-22s %-7s %-16s %12s %10s %10s %10s %10s %12s %5s\n",
+                          "graph", "layout", "benchmark", "ops/s", "p50 us", "p90 us", "p99 us", "max us", "bytes/op", "gcs");
+
+        for (String file : files) {
+            String name = new File(file).getName();
+
+            run(name, "linked", "load", () -> quietly(() -> new Graph(file)));
+            Graph linked = (Graph) quietly(() -> new Graph(file));
+            linked.setTrace(Trace.OFF);
+            run(name, "linked", "MST_Prim", () -> linked.MST_Prim(1));
+            run(name, "linked", "SPT_Dijkstra", () -> linked.SPT_Dijkstra(1));
+
+            run(name, "csr", "load", () -> new EdgeListLoader().load(file));
+            CSRGraph g = new EdgeListLoader().load(file);
+            g.setTrace(Trace.OFF);
+            run(name, "csr", "MST_Prim", () -> g.MST_Prim(1));
+            run(name, "csr", "SPT_Dijkstra", () -> g.SPT_Dijkstra(1));
+
+            // the reused engine only resets the vertices the previous query touched
+            QueryEngine engine = new QueryEngine(g);
+            run(name, "csr", "shortestPathTree", () -> { engine.shortestPathTree(1); return engine; });
+
+            java.util.Random random = new java.util.Random(42);
+            run(name, "csr", "shortestPath", () -> engine.shortestPath(1 + random.nextInt(g.V), 1 + random.nextInt(g.V)));
+        }
+    }
+
+    // run op with System.out thrown away, for the constructors that print every edge
+    private static Object quietly(Op op) throws IOException {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            return op.run();
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    // side x side grid of roads with random lengths in meters, written to a temporary edge list file
+    private static String syntheticGrid(int side) throws IOException {
+        java.util.Random random = new java.util.Random(side);
+        File dir = java.nio.file.Files.createTempDirectory("gibraltarbench").toFile();
+        File file = new File(dir, "grid" + side * side + ".txt");
+        dir.deleteOnExit();
+        file.deleteOnExit();
+
+        try (PrintWriter w = new PrintWriter(new BufferedWriter(new FileWriter(file)))) {
+            w.println(side * side + " " + 2 * side * (side - 1));
+            for (int r = 0; r < side; ++r) {
+                for (int c = 0; c < side; ++c) {
+                    int v = r * side + c + 1;
+                    if (c + 1 < side) {
+                        w.println(v + " " + (v + 1) + " " + (1 + random.nextInt(500)));
+                    }
+                    if (r + 1 < side) {
+                        w.println(v + " " + (v + side) + " " + (1 + random.nextInt(500)));
+                    }
+                }
+            }
+        }
+        return file.getPath();
+    }
+
+    private static void run(String graph, String layout, String benchmark, Op op) throws IOException {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        for (int i = 0; i < warmup; ++i) {
+            iteration(op, new long[1024]);
+        }
+
+        long[] samples = new long[1024];
+        int n = 0;
+        long totalNanos = 0;
+        long gcs = gcCount();
+        long allocated = threads.getCurrentThreadAllocatedBytes();
+
+        for (int i = 0; i < iterations; ++i) {
+            long startTime = System.nanoTime();
+            long[] times = iteration(op, new long[1024]);
+            totalNanos += System.nanoTime() - startTime;
+
+            int count = (int) times[0];
+            if (n + count > samples.length) {
+                samples = java.util.Arrays.copyOf(samples, Math.max(2 * samples.length, n + count));
+            }
+            System.arraycopy(times, 1, samples, n, count);
+            n += count;
+        }
+
+        // the samples arrays themselves are counted too, a few bytes per call at most
+        double bytesPerOp = (double) (threads.getCurrentThreadAllocatedBytes() - allocated) / n;
+        gcs = gcCount() - gcs;
+
+        java.util.Arrays.sort(samples, 0, n);
+        System.out.printf("%-22s %-7s %-16s %12.1f %10.1f %10.1f %10.1f %10.1f %12.0f %5d\n",
+                          graph, layout, benchmark, n / (totalNanos / 1e9),
+                          percentile(samples, n, 50), percentile(samples, n, 90), percentile(samples, n, 99),
+                          samples[n - 1] / 1e3, bytesPerOp, gcs);
+    }
+
+    // calls op until iterationMillis have passed, times[0] = number of calls, times[1..] = nanoseconds per call
+    private static long[] iteration(Op op, long[] times) throws IOException {
+        long end = System.nanoTime() + iterationMillis * 1_000_000;
+        int n = 0;
+        do {
+            long startTime = System.nanoTime();
+            sink = op.run();
+            long t = System.nanoTime() - startTime;
+
+            if (n + 2 > times.length) {
+                times = java.util.Arrays.copyOf(times, 2 * times.length);
+            }
+            times[++n] = t;
+        } while (System.nanoTime() < end);
+        times[0] = n;
+        return times;
+    }
+
+    // p-th percentile of the sorted samples, in microseconds
+    private static double percentile(long[] sorted, int n, int p) {
+        return sorted[Math.min(n - 1, (int) Math.ceil(p / 100.0 * n) - 1)] / 1e3;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (java.lang.management.GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+}
+
+/*
+ * Long-lived routing service over one loaded graph, on the JDK's built-in HTTP server bound to localhost.
+ * Run with: java RoutingServer <graph file> [port] [threads] [cached trees] [lru|lfu]
+ *
+ *    GET /route?from=1&to=300[&mode=dijkstra|bidirectional]  shortest route, bidirectional by default
+ *    GET /distance?from=1&to=5,17,300                         distances from one source to up to MAX_TARGETS targets
+ *    GET /mst?root=1                                          weight of the MST of the component of root
+ *    GET /metrics                                             counters and latencies of the route and distance queries
+ *    POST /edge?from=1&to=2&length=300                        new length of a road segment, for closures and traffic
+ *
+ * Answers are JSON, with "length": null for an unreachable target. The graph is shared by the
+ * workers: each thread has its own QueryEngine, so a request allocates no O(V) state, only its
+ * parameters, the route and the response. Queries share a read lock and /edge takes the write
+ * lock, so no search ever sees a half updated graph. The MST of a component is the same from every root,
+ * so it is computed once per component with MST_Prim and then served from a table.
+ * Requests are handled by a fixed pool of threads, connections beyond that wait in the backlog.
+ * With cached trees > 0, /route and /distance are read from an SPTCache of the trees of the most
+ * used sources instead of searching, and the route follows the tree whatever the mode.
+ */
+class RoutingServer {
+    // largest number of targets of one /distance request
+    static final int MAX_TARGETS = 1000;
+
+    private final CSRGraph g;
+    private final Components components;
+    private final QueryMetrics metrics = new QueryMetrics("server");
+    private final ThreadLocal<QueryEngine> engines;
+
+    // trees of the most used sources, null when routes are always searched
+    private final SPTCache cache;
+
+    // MST of each component, indexed by component label, computed by the first request that needs it
+    private final java.util.concurrent.atomic.AtomicReferenceArray<MSTResult> msts;
+
+    // response text of the current request, reused by each worker thread
+    private final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    // held for reading by every query and for writing by edge updates
+    private final java.util.concurrent.locks.ReadWriteLock lock = new java.util.concurrent.locks.ReentrantReadWriteLock();
+
+    public RoutingServer(CSRGraph g) {
+        this(g, 0, SPTCache.Policy.LRU);
+    }
+
+    // server that keeps up to cachedTrees shortest path trees, none when it is 0
+    public RoutingServer(CSRGraph g, int cachedTrees, SPTCache.Policy policy) {
+        this.g = g;
+        cache = cachedTrees > 0 ? new SPTCache(g, cachedTrees, policy, metrics) : null;
+        g.setTrace(Trace.OFF);
+        components = new Components(g);
+        msts = new java.util.concurrent.atomic.AtomicReferenceArray<>(g.V + 1);
+        engines = ThreadLocal.withInitial(() -> {
+            QueryEngine engine = new QueryEngine(g, QueueKind.BINARY, metrics);
+            engine.setComponents(components);
+            return engine;
+        });
+    }
+
+    public static void main(String[] args) throws IOException {
+        String fname = args.length > 0 ? args[0] : "gibraltar.txt";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 2 * Runtime.getRuntime().availableProcessors();
+        int cachedTrees = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+        SPTCache.Policy policy = args.length > 4 ? SPTCache.Policy.valueOf(args[4].toUpperCase()) : SPTCache.Policy.LRU;
+
+        long startTime = System.nanoTime();
+        CSRGraph g = fname.endsWith(".csr") ? GraphSnapshot.open(fname) : new EdgeListLoader().load(fname);
+        RoutingServer routing = new RoutingServer(g, cachedTrees, policy);
+        System.out.printf("Loaded %d vertices, %d edges, %d components in %.3f ms\n", g.V, g.E,
+                          routing.components.count(), (System.nanoTime() - startTime) / 1_000_000.0);
+
+        HttpServer server = routing.start(port, threads);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(1)));
+        System.out.println("Listening on http://localhost:" + server.getAddress().getPort() + "/ with " + threads + " threads");
+    }
+
+    // start serving on localhost:port, 0 for any free port
+    public HttpServer start(int port, int threads) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 4096);
+        server.createContext("/", this::handle);
+        server.setExecutor(Executors.newFixedThreadPool(threads));
+        server.start();
+        return server;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        StringBuilder sb = buffers.get();
+        sb.setLength(0);
+        int status = 200;
+
+        try {
+            String query = exchange.getRequestURI().getRawQuery();
+            String path = exchange.getRequestURI().getPath();
+            boolean update = path.equals("/edge");
+            if (!exchange.getRequestMethod().equals(update ? "POST" : "GET")) {
+                status = 405;
+                error(sb, update ? "only POST is supported" : "only GET is supported");
+            } else {
+                java.util.concurrent.locks.Lock held = update ? lock.writeLock() : lock.readLock();
+                held.lock();
+                try {
+                    switch (path) {
+                        case "/route":
+                            route(sb, vertex(query, "from"), vertex(query, "to"), mode(param(query, "mode")));
+                            break;
+                        case "/distance":
+                            distance(sb, vertex(query, "from"), param(query, "to"));
+                            break;
+                        case "/mst":
+                            mst(sb, vertex(query, "root"));
+                            break;
+                        case "/metrics":
+                            metrics(sb);
+                            break;
+                        case "/edge":
+                            edge(sb, vertex(query, "from"), vertex(query, "to"), length(query));
+                            break;
+                        default:
+                            status = 404;
+                            error(sb, "unknown endpoint " + path);
+                    }
+                } finally {
+                    held.unlock();
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // missing or malformed parameters, and vertices outside 1..V
+            sb.setLength(0);
+            status = 400;
+            error(sb, e.getMessage());
+        } catch (RuntimeException e) {
+            // anything else is a server fault, but the client still gets an answer instead of a timeout
+            sb.setLength(0);
+            status = 500;
+            error(sb, "internal error: " + e);
+        }
+
+        try {
+            byte[] body = sb.toString().getBytes(java.nio.charset.StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void route(StringBuilder sb, int s, int t, SearchMode mode) {
+        Route route = cache != null ? cache.route(s, t) : engines.get().shortestPath(s, t, mode);
+
+        sb.append("{\"from\":").append(s).append(",\"to\":").append(t).append(",\"length\":");
+        if (route.found()) {
+            sb.append(route.length);
+        } else {
+            sb.append("null");
+        }
+        sb.append(",\"vertices\":[");
+        for (int i = 0; i < route.vertices.length; ++i) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(route.vertices[i]);
+        }
+        sb.append("]}");
+    }
+
+    private void distance(StringBuilder sb, int s, String to) {
+        if (to == null || to.isEmpty()) {
+            throw new IllegalArgumentException("missing parameter to");
+        }
+
+        String[] parts = to.split(",");
+        if (parts.length > MAX_TARGETS) {
+            throw new IllegalArgumentException("at most " + MAX_TARGETS + " targets per request");
+        }
+        int[] targets = new int[parts.length];
+        for (int j = 0; j < parts.length; ++j) {
+            targets[j] = parseVertex(parts[j], "to");
+        }
+
+        int[] dist = new int[targets.length];
+        if (cache != null) {
+            int[] tree = cache.tree(s).dist;
+            for (int j = 0; j < targets.length; ++j) {
+                dist[j] = tree[targets[j]];
+            }
+        } else {
+            engines.get().distances(s, targets, dist, 0);
+        }
+
+        sb.append("{\"from\":").append(s).append(",\"distances\":[");
+        for (int j = 0; j < targets.length; ++j) {
+            if (j > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"to\":").append(targets[j]).append(",\"length\":");
+            if (dist[j] == Integer.MAX_VALUE) {
+                sb.append("null");
+            } else {
+                sb.append(dist[j]);
+            }
+            sb.append('}');
+        }
+        sb.append("]}");
+    }
+
+    private void mst(StringBuilder sb, int root) {
+        int label = components.label(root);
+        MSTResult mst = msts.get(label);
+
+        // two threads may both compute the same tree, either result is kept
+        if (mst == null) {
+            mst = g.MST_Prim(label);
+            msts.compareAndSet(label, null, mst);
+        }
+
+        sb.append("{\"root\":").append(root).append(",\"component\":").append(label)
+          .append(",\"weight\":").append(mst.weight).append(",\"edges\":").append(mst.edges).append('}');
+    }
+
+    // called with the write lock held
+    private void edge(StringBuilder sb, int u, int v, int wgt) {
+        int old = g.updateEdge(u, v, wgt);
+        if (old < 0) {
+            throw new IllegalArgumentException("There is no road segment " + u + " - " + v);
+        }
+
+        // the cached trees are dropped by the graph, the MST of the component is computed again when asked for
+        msts.set(components.label(u), null);
+
+        sb.append("{\"from\":").append(u).append(",\"to\":").append(v)
+          .append(",\"length\":").append(wgt).append(",\"old\":").append(old).append('}');
+    }
+
+    private void metrics(StringBuilder sb) {
+        MetricsSnapshot m = metrics.snapshot();
+        sb.append("{\"queries\":").append(m.queries)
+          .append(",\"heapInserts\":").append(m.inserts)
+          .append(",\"heapRemoves\":").append(m.removes)
+          .append(",\"decreaseKeys\":").append(m.decreaseKeys)
+          .append(",\"siftSwaps\":").append(m.swaps)
+          .append(",\"relaxations\":").append(m.relaxations)
+          .append(",\"settled\":").append(m.settled)
+          .append(String.format(",\"meanMicros\":%.1f,\"p50Micros\":%.1f,\"p99Micros\":%.1f,\"maxMicros\":%.1f",
+                                m.meanMicros(), m.percentileMicros(50), m.percentileMicros(99), m.percentileMicros(100)));
+        if (cache != null) {
+            sb.append(",\"cache\":{\"trees\":").append(cache.size())
+              .append(",\"hits\":").append(cache.hits())
+              .append(",\"misses\":").append(cache.misses())
+              .append(",\"evictions\":").append(cache.evictions())
+              .append(",\"dropped\":").append(cache.dropped()).append('}');
+        }
+        sb.append('}');
+    }
+
+    private static void error(StringBuilder sb, String message) {
+        sb.append("{\"error\":\"");
+        for (int i = 0; i < message.length(); ++i) {
+            char c = message.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\');
+            }
+            sb.append(c < ' ' ? ' ' : c);
+        }
+        sb.append("\"}");
+    }
+
+    private static SearchMode mode(String mode) {
+        if (mode == null) {
+            return SearchMode.BIDIRECTIONAL;
+        }
+        SearchMode m = SearchMode.valueOf(mode.toUpperCase());
+        if (m != SearchMode.DIJKSTRA && m != SearchMode.BIDIRECTIONAL) {
+            throw new IllegalArgumentException("mode must be dijkstra or bidirectional");
+        }
+        return m;
+    }
+
+    private static int length(String query) {
+        String value = param(query, "length");
+        if (value == null) {
+            throw new IllegalArgumentException("missing parameter length");
+        }
+        int wgt;
+        try {
+            wgt = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("length is not a number of meters: " + value);
+        }
+        if (wgt < 0) {
+            throw new IllegalArgumentException("length must not be negative: " + wgt);
+        }
+        return wgt;
+    }
+
+    private int vertex(String query, String name) {
+        String value = param(query, name);
+        if (value == null) {
+            throw new IllegalArgumentException("missing parameter " + name);
+        }
+        return parseVertex(value, name);
+    }
+
+    private int parseVertex(String value, String name) {
+        int v;
+        try {
+            v = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " is not a vertex number: " + value);
+        }
+        if (v < 1 || v > g.V) {
+            throw new IllegalArgumentException("Vertex " + v + " is not in 1.." + g.V);
+        }
+        return v;
+    }
+
+    // value of name in a raw query string like "from=1&to=2", null if it is not there
+    static String param(String query, String name) {
+        if (query == null) {
+            return null;
+        }
+        for (int start = 0; start < query.length(); ) {
+            int end = query.indexOf('&', start);
+            if (end < 0) {
+                end = query.length();
+            }
+            if (query.startsWith(name, start) && start + name.length() < end && query.charAt(start + name.length()) == '=') {
+                return java.net.URLDecoder.decode(query.substring(start + name.length() + 1, end),
+                                                  java.nio.charset.StandardCharsets.UTF_8);
+            }
+            start = end + 1;
+        }
+        return null;
+    }
+}
+
+
+public class GibraltarRoadsNetworkGraph {
+    public static void main(String[] args) throws IOException {
+        // Options: --linked for adjacency linked lists instead of CSR arrays,
+        // --trace=off|summary|full for how much of SPT_Dijkstra gets printed,
+        // --save-snapshot=<file> to write the loaded graph as a binary snapshot,
+        // --to=<vertex> for a single route from the starting vertex instead of the whole tree,
+        // --mode=dijkstra|bidirectional|astar|alt for the search strategy of that route,
+        // --coords=<file> vertex coordinates for astar, --landmarks=<k> number of landmarks for alt,
+        // --ch=<file> contraction hierarchy, read from file or built and written to it,
+        // --matrix=<n> distance table between n random sources and n random targets,
+        // --queue=binary|dary|pairing|radix|bucket for the priority queue of the Dijkstra searches,
+        // --delta=<w> parallel delta-stepping tree with bucket width w (0 for the average edge weight),
+        // --metrics to count heap operations, relaxations and settled vertices of the route or tree query,
+        // --batch=<file> to answer the "source target" pairs of a query file (- for stdin) with --mode,
+        // after --warmup=<n> random queries,
+        // --updates=<n> with --linked for n random edge updates, each repairing the tree from the starting vertex,
+        // --forest to span every connected component with one tree each, rooted at its lowest vertex
+        boolean linked = false;
+        boolean forest = false;
+        int updates = 0;
+        String batchFile = null;
+        int warmup = 1000;
+        boolean metricsEnabled = false;
+        int deltaWidth = -1;
+        QueueKind queueKind = QueueKind.BINARY;
+        int matrixSize = 0;
+        String chFile = null;
+        String coordFile = null;
+        int landmarkCount = 8;
+        SearchMode mode = SearchMode.DIJKSTRA;
+        Trace trace = Trace.FULL;
+        String snapshotFile = null;
+        int target = 0;
+        for (String arg : args) {
+            if (arg.equals("--linked")) {
+                linked = true;
+            } else if (arg.equals("--forest")) {
+                forest = true;
+            } else if (arg.startsWith("--trace=")) {
+                trace = Trace.valueOf(arg.substring("--trace=".length()).toUpperCase());
+            } else if (arg.startsWith("--save-snapshot=")) {
+                snapshotFile = arg.substring("--save-snapshot=".length());
+            } else if (arg.startsWith("--to=")) {
+                target = Integer.parseInt(arg.substring("--to=".length()));
+            } else if (arg.startsWith("--mode=")) {
+                mode = SearchMode.valueOf(arg.substring("--mode=".length()).toUpperCase());
+            } else if (arg.startsWith("--coords=")) {
+                coordFile = arg.substring("--coords=".length());
+            } else if (arg.startsWith("--landmarks=")) {
+                landmarkCount = Integer.parseInt(arg.substring("--landmarks=".length()));
+            } else if (arg.startsWith("--ch=")) {
+                chFile = arg.substring("--ch=".length());
+            } else if (arg.startsWith("--matrix=")) {
+                matrixSize = Integer.parseInt(arg.substring("--matrix=".length()));
+            } else if (arg.startsWith("--delta=")) {
+                deltaWidth = Integer.parseInt(arg.substring("--delta=".length()));
+            } else if (arg.startsWith("--queue=")) {
+                queueKind = QueueKind.valueOf(arg.substring("--queue=".length()).toUpperCase());
+            } else if (arg.equals("--metrics")) {
+                metricsEnabled = true;
+            } else if (arg.startsWith("--batch=")) {
+                batchFile = arg.substring("--batch=".length());
+            } else if (arg.startsWith("--updates=")) {
+                updates = Integer.parseInt(arg.substring("--updates=".length()));
+            } else if (arg.startsWith("--warmup=")) {
+                warmup = Integer.parseInt(arg.substring("--warmup=".length()));
+            }
+        }
+
+        // check the prerequisites of the search mode before any graph is loaded or any query runs
+        if (mode == SearchMode.ASTAR && coordFile == null) {
+            System.out.println("--mode=astar needs vertex coordinates, pass them with --coords=<file>");
+            return;
+        }
+        if (mode == SearchMode.ALT && landmarkCount < 1) {
+            System.out.println("--mode=alt needs at least one landmark, --landmarks=" + landmarkCount);
+            return;
+        }
+
+        Scanner scanner = new Scanner(System.in);
+
+        // Batch mode reads the graph file name from the first input line without any prompts,
+        // so the output only has result lines and '#' comment lines
+        if (batchFile != null) {
+            String fname = scanner.nextLine().trim();
+            CSRGraph g = fname.endsWith(".csr") ? GraphSnapshot.open(fname) : new EdgeListLoader().load(fname);
+            g.setTrace(Trace.OFF);
+
+            Scanner queries = batchFile.equals("-") ? scanner : new Scanner(new BufferedReader(new FileReader(batchFile)));
+            runBatch(g, queries, mode, queueKind, coordFile, landmarkCount, warmup);
+            return;
+        }
+
+        System.out.print("Student name: Ian Miller\n");
+        System.out.print("Student number: D23124620\n");
+
+        // Prompt for file name
+        System.out.print("\nEnter graph file name (eg. gibraltar.txt): ");
+        String fname = scanner.nextLine();
+
+        // Prompt for starting vertex
+        System.out.print("Enter starting vertex (as a number, e.g., 1): ");
+        int s = scanner.nextInt();
+
+        // Load and construct graph: binary snapshots (*.csr) are opened directly,
+        // text files are parsed straight from the memory-mapped file into CSR arrays
+        WeightedGraph g;
+        if (linked) {
+            g = new Graph(fname);
+        } else if (fname.endsWith(".csr")) {
+            long startTime = System.nanoTime();
+            g = GraphSnapshot.open(fname);
+            System.out.printf("Opened snapshot in %.3f ms\n", (System.nanoTime() - startTime) / 1_000_000.0);
+        } else {
+            EdgeListLoader loader = new EdgeListLoader();
+            g = loader.load(fname);
+            loader.printLoadMetrics();
+        }
+
+        if (snapshotFile != null && g instanceof CSRGraph) {
+            GraphSnapshot.write((CSRGraph) g, snapshotFile);
+            System.out.println("Snapshot written to " + snapshotFile);
+        }
+        g.setTrace(trace);
+        g.setQueue(queueKind);
+        if (forest) {
+            g.setForest(labelComponents(g instanceof Graph ? ((Graph) g).toCSR() : (CSRGraph) g));
+        }
+        g.display();
+
+        // the metrics are also exported over JMX, so they can be watched in jconsole while the program runs
+        QueryMetrics metrics = null;
+        if (metricsEnabled) {
+            metrics = new QueryMetrics(queueKind.name().toLowerCase());
+            try {
+                metrics.register();
+            } catch (JMException e) {
+                System.out.println("Metrics are not exported over JMX: " + e.getMessage());
+            }
+            g.setMetrics(metrics);
+        }
+
+        if (matrixSize > 0 && g instanceof CSRGraph) {
+            runDistanceMatrix((CSRGraph) g, matrixSize);
+            return;
+        }
+
+        if (updates > 0 && g instanceof Graph) {
+            runDynamicUpdates((Graph) g, s, updates);
+            return;
+        }
+
+        if (deltaWidth >= 0 && g instanceof CSRGraph) {
+            runDeltaStepping((CSRGraph) g, s, deltaWidth);
+            return;
+        }
+
+        if (chFile != null && g instanceof CSRGraph) {
+            runContractionHierarchy((CSRGraph) g, chFile, s, target);
+            return;
+        }
+
+        if (target != 0 && g instanceof CSRGraph) {
+            QueryEngine engine = new QueryEngine((CSRGraph) g, queueKind, metrics);
+            engine.setComponents(labelComponents((CSRGraph) g));
+            if (mode == SearchMode.ASTAR) {
+                engine.setCoordinates(new Coordinates(coordFile, ((CSRGraph) g).V));
+            } else if (mode == SearchMode.ALT) {
+                long startTime = System.nanoTime();
+                engine.setLandmarks(new Landmarks((CSRGraph) g, landmarkCount));
+                System.out.printf("\nPrecomputed %d landmarks in %.3f ms\n", landmarkCount, (System.nanoTime() - startTime) / 1_000_000.0);
+            }
+
+            long startTime = System.nanoTime();
+            Route route = engine.shortestPath(s, target, mode);
+            double timeInMillis = (System.nanoTime() - startTime) / 1_000_000.0;
+
+            System.out.print("\nShortest route from " + s + " to " + target + ": " + route + "\n");
+            System.out.print("Vertices settled: " + engine.settledCount() + " of " + ((CSRGraph) g).V + "\n");
+            System.out.printf("Execution Time: %.3f ms\n", timeInMillis);
+            if (metrics != null) {
+                System.out.println("\n" + metrics.snapshot());
+            }
+            return;
+        }
+
+        System.out.print("\nPreparing for running Dijkstra's Shortest Path Tree Algorithm on Gibraltar's Roads Network Graph \n"); 
+        System.out.print("The weight between two nodes (roads) represents the distance in meters\n"); 
+        g.SPT_Dijkstra(s);  
+        System.out.print("\nTime complexity: O(V + E log V), Space complexity: O(V + E)\n");
+        if (metrics != null) {
+            System.out.println("\n" + metrics.snapshot());
+        }
+    }
+
+    /*
+     * Batch mode: the graph is loaded once and one warmed-up QueryEngine answers every
+     * "source target" pair read from queries. Each answer is written as one line
+     *    source target length vertices
+     * with the length in meters and the route vertices separated by commas, or "-" for both
+     * when the target is not reachable, and "invalid" for a vertex that is not in the graph.
+     * Throughput and latency percentiles follow at the end as '#' comment lines.
+     */
+    private static void runBatch(CSRGraph g, Scanner queries, SearchMode mode, QueueKind queueKind,
+                                 String coordFile, int landmarkCount, int warmup) throws IOException {
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16));
+        out.printf("# %d vertices, %d edges, %s search on the %s queue\n", g.V, g.E,
+                   mode.name().toLowerCase(), queueKind.name().toLowerCase());
+
+        QueryMetrics metrics = new QueryMetrics("batch");
+        QueryEngine engine = new QueryEngine(g, queueKind, metrics);
+        Components components = new Components(g);
+        engine.setComponents(components);
+        out.printf("# labelled %d connected components in %.3f ms\n", components.count(), components.millis);
+
+        if (mode == SearchMode.ASTAR) {
+            engine.setCoordinates(new Coordinates(coordFile, g.V));
+        } else if (mode == SearchMode.ALT) {
+            long startTime = System.nanoTime();
+            engine.setLandmarks(new Landmarks(g, landmarkCount));
+            out.printf("# precomputed %d landmarks in %.3f ms\n", landmarkCount, (System.nanoTime() - startTime) / 1_000_000.0);
+        }
+
+        // random queries let the JIT compile the search before the measured ones, then the metrics start over
+        java.util.Random random = new java.util.Random(42);
+        for (int i = 0; i < warmup; ++i) {
+            engine.shortestPath(1 + random.nextInt(g.V), 1 + random.nextInt(g.V), mode);
+        }
+        metrics.reset();
+
+        int invalid = 0;
+        StringBuilder line = new StringBuilder();
+        long startTime = System.nanoTime();
+
+        while (queries.hasNextInt()) {
+            int s = queries.nextInt();
+            if (!queries.hasNextInt()) {
+                break;
+            }
+            int t = queries.nextInt();
+
+            line.setLength(0);
+            line.append(s).append(' ').append(t).append(' ');
+            if (s < 1 || s > g.V || t < 1 || t > g.V) {
+                line.append("invalid");
+                ++invalid;
+            } else {
+                Route route = engine.shortestPath(s, t, mode);
+                if (!route.found()) {
+                    line.append("- -");
+                } else {
+                    line.append(route.length).append(' ');
+                    for (int i = 0; i < route.vertices.length; ++i) {
+                        if (i > 0) {
+                            line.append(',');
+                        }
+                        line.append(route.vertices[i]);
+                    }
+                }
+            }
+            out.println(line);
+        }
+        out.flush();
+
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        MetricsSnapshot m = metrics.snapshot();
+        double q = Math.max(1, m.queries);
+        out.printf("# %d queries (%d invalid) in %.3f ms, %.1f queries/s\n", m.queries + invalid, invalid,
+                   seconds * 1000, (m.queries + invalid) / seconds);
+        out.printf("# latency mean %.1f us, p50 %.1f us, p99 %.1f us, max %.1f us\n",
+                   m.meanMicros(), m.percentileMicros(50), m.percentileMicros(99), m.percentileMicros(100));
+        out.printf("# per query %.1f settled vertices, %.1f relaxations, %.1f heap inserts\n",
+                   m.settled / q, m.relaxations / q, m.inserts / q);
+        out.flush();
+    }
+
+    // label the connected components up front, so routes between them are answered without searching
+    private static Components labelComponents(CSRGraph g) {
+        Components components = new Components(g);
+        System.out.printf("\nLabelled %d connected components in %.3f ms\n", components.count(), components.millis);
+        return components;
+    }
+
+    /*
+     * n random edge updates on the linked graph: segments made longer or shorter, closed, reopened
+     * and added. The tree from s is repaired after each one and checked against a full SPT_Dijkstra.
+     * DynamicUpdateCheck runs scripted updates with known distances as well as these.
+     */
+    private static void runDynamicUpdates(Graph g, int s, int n) {
+        g.setTrace(Trace.OFF);
+        Graph.DynamicSPT tree = g.track(s);
+        int V = tree.toResult().dist.length - 1;
+
+        java.util.Random random = new java.util.Random(42);
+        java.util.ArrayDeque<int[]> closed = new java.util.ArrayDeque<>();
+        long repairNanos = 0, fullNanos = 0, touched = 0;
+
+        for (int i = 0; i < n; ++i) {
+            // tree edges are real segments and the ones most likely to change the tree
+            SPTResult current = tree.toResult();
+            int v = 1 + random.nextInt(V);
+            int p = current.parent[v];
+            int kind = random.nextInt(5);
+
+            long startTime = System.nanoTime();
+            if (p != 0 && kind < 2) {
+                int old = current.dist[v] - current.dist[p];
+                g.updateEdge(p, v, Math.max(1, old * (50 + random.nextInt(151)) / 100));
+            } else if (p != 0 && kind == 2) {
+                int old = current.dist[v] - current.dist[p];
+                g.deleteEdge(p, v);
+                closed.add(new int[] {p, v, old});
+            } else if (!closed.isEmpty() && kind == 3) {
+                int[] e = closed.poll();
+                g.insertEdge(e[0], e[1], e[2]);
+            } else {
+                g.insertEdge(v, 1 + random.nextInt(V), 1 + random.nextInt(1000));
+            }
+            repairNanos += System.nanoTime() - startTime;
+            touched += tree.touchedCount();
+
+            startTime = System.nanoTime();
+            SPTResult full = g.SPT_Dijkstra(s);
+            fullNanos += System.nanoTime() - startTime;
+
+            if (!java.util.Arrays.equals(full.dist, 1, V + 1, tree.toResult().dist, 1, V + 1)) {
+                throw new IllegalStateException("Repaired tree differs from SPT_Dijkstra after update " + (i + 1));
+            }
+        }
+
+        System.out.printf("\n%d edge updates, every repaired tree equal to SPT_Dijkstra from %d\n", n, s);
+        System.out.printf("Average repair %.3f ms changing %.1f distances of %d, full SPT_Dijkstra %.3f ms\n",
+                          repairNanos / 1e6 / n, (double) touched / n, V, fullNanos / 1e6 / n);
+    }
+
+    // time a parallel n x n distance table between random vertices against the same table on one thread
+    private static void runDistanceMatrix(CSRGraph g, int n) {
+        java.util.Random random = new java.util.Random(42);
+        int[] sources = new int[n];
+        int[] targets = new int[n];
+        for (int i = 0; i < n; ++i) {
+            sources[i] = 1 + random.nextInt(g.V);
+            targets[i] = 1 + random.nextInt(g.V);
+        }
+
+        DistanceMatrixEngine parallel = new DistanceMatrixEngine(g);
+        DistanceMatrixEngine single = new DistanceMatrixEngine(g, new ForkJoinPool(1));
+
+        // warm up both before timing
+        parallel.distanceMatrix(sources, targets);
+        single.distanceMatrix(sources, targets);
+
+        long startTime = System.nanoTime();
+        int[] table = parallel.distanceMatrix(sources, targets);
+        double parallelMillis = (System.nanoTime() - startTime) / 1_000_000.0;
+
+        startTime = System.nanoTime();
+        int[] check = single.distanceMatrix(sources, targets);
+        double singleMillis = (System.nanoTime() - startTime) / 1_000_000.0;
+
+        if (!java.util.Arrays.equals(table, check)) {
+            throw new IllegalStateException("Parallel distance table differs from the single threaded one");
+        }
+
+        System.out.printf("\n%d x %d distance table: %.3f ms on %d threads, %.3f ms on 1 thread, speedup %.1fx\n",
+                          n, n, parallelMillis, ForkJoinPool.commonPool().getParallelism(), singleMillis, singleMillis / parallelMillis);
+    }
+
+    // time the delta-stepping tree on all threads and on one thread against SPT_Dijkstra
+    private static void runDeltaStepping(CSRGraph g, int s, int delta) {
+        if (delta == 0) {
+            delta = DeltaStepping.defaultDelta(g);
+        }
+        DeltaStepping parallel = new DeltaStepping(g, delta);
+        DeltaStepping single = new DeltaStepping(g, delta, new ForkJoinPool(1));
+        g.setTrace(Trace.OFF);
+
+        // warm up all three before timing
+        SPTResult expected = g.SPT_Dijkstra(s);
+        parallel.shortestPathTree(s);
+        single.shortestPathTree(s);
+
+        long startTime = System.nanoTime();
+        SPTResult tree = parallel.shortestPathTree(s);
+        double parallelMillis = (System.nanoTime() - startTime) / 1_000_000.0;
+
+        startTime = System.nanoTime();
+        single.shortestPathTree(s);
+        double singleMillis = (System.nanoTime() - startTime) / 1_000_000.0;
+
+        startTime = System.nanoTime();
+        expected = g.SPT_Dijkstra(s);
+        double dijkstraMillis = (System.nanoTime() - startTime) / 1_000_000.0;
+
+        if (!java.util.Arrays.equals(tree.dist, expected.dist) || tree.edges != expected.edges) {
+            throw new IllegalStateException("Delta-stepping distances differ from SPT_Dijkstra");
+        }
+
+        // every parent edge must be tight, so parent[] is a shortest path tree
+        for (int v = 1; v <= g.V; ++v) {
+            int u = tree.parent[v];
+            if (u == 0) {
+                continue;
+            }
+            boolean tight = false;
+            for (int i = g.offsets[u]; i < g.offsets[u + 1] && !tight; ++i) {
+                tight = g.targets[i] == v && tree.dist[u] + g.weights[i] == tree.dist[v];
+            }
+            if (!tight) {
+                throw new IllegalStateException("Delta-stepping parent of " + v + " is not on a shortest path");
+            }
+        }
+
+        System.out.printf("\nDelta-stepping from %d with bucket width %dm: %.3f ms on %d threads, %.3f ms on 1 thread, speedup %.1fx\n",
+                          s, delta, parallelMillis, ForkJoinPool.commonPool().getParallelism(), singleMillis, singleMillis / parallelMillis);
+        System.out.printf("SPT_Dijkstra: %.3f ms, vertices reached: %d of %d\n", dijkstraMillis, tree.edges + 1, g.V);
+    }
+
+    /*
+     * Read the contraction hierarchy from chFile, or build it and write it there,
+     * then answer the route query and compare query times with SPT_Dijkstra
+     */
+    private static void runContractionHierarchy(CSRGraph g, String chFile, int s, int target) throws IOException {
+        ContractionHierarchy ch;
+        if (new File(chFile).exists()) {
+            ch = ContractionHierarchy.open(chFile);
+            if (ch.V != g.V) {
+                throw new IOException(chFile + " was built for a graph with " + ch.V + " vertices, not " + g.V);
+            }
+            System.out.print("\nContraction hierarchy read from " + chFile + "\n");
+        } else {
+            ch = ContractionHierarchy.build(g);
+            ch.write(chFile);
+            System.out.printf("\nContraction hierarchy built in %.3f ms and written to %s\n", ch.preprocessMillis, chFile);
+        }
+        System.out.print("Shortcuts added: " + ch.shortcuts + ", upward edges: " + ch.targets.length + "\n");
+
+        CHQuery query = new CHQuery(ch);
+        query.setComponents(labelComponents(g));
+        if (target != 0) {
+            Route route = query.shortestPath(s, target);
+            System.out.print("\nShortest route from " + s + " to " + target + ": " + route + "\n");
+            System.out.print("Vertices settled: " + query.settledCount() + " of " + g.V + "\n");
+        }
+
+        // same random queries answered by SPT_Dijkstra and by the hierarchy, the last of 5 rounds is reported
+        int queries = 200;
+        java.util.Random random = new java.util.Random(42);
+        int[] from = new int[queries];
+        int[] to = new int[queries];
+        for (int i = 0; i < queries; ++i) {
+            from[i] = 1 + random.nextInt(g.V);
+            to[i] = 1 + random.nextInt(g.V);
+        }
+
+        g.setTrace(Trace.OFF);
+        long sptNanos = 0, chNanos = 0;
+        for (int round = 0; round < 5; ++round) {
+            sptNanos = chNanos = 0;
+            for (int i = 0; i < queries; ++i) {
+                long startTime = System.nanoTime();
+                SPTResult tree = g.SPT_Dijkstra(from[i]);
+                long midTime = System.nanoTime();
+                Route route = query.shortestPath(from[i], to[i]);
+                chNanos += System.nanoTime() - midTime;
+                sptNanos += midTime - startTime;
+
+                if (route.length != tree.dist[to[i]]) {
+                    throw new IllegalStateException("Hierarchy route " + from[i] + " -> " + to[i] + " is " + route.length
+                                                    + "m, SPT_Dijkstra found " + tree.dist[to[i]] + "m");
+                }
+            }
+        }
+
+        System.out.printf("\nAverage over %d queries: SPT_Dijkstra %.3f ms, contraction hierarchy %.3f ms, speedup %.1fx\n",
+                          queries, sptNanos / 1e6 / queries, chNanos / 1e6 / queries, (double) sptNanos / chNanos);
     }
 }
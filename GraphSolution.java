@@ -1,17 +1,97 @@
 // Simple weighted graph representation 
 // Uses an Adjacency Linked Lists, suitable for sparse graphs
+// or a Compressed Sparse Row (CSR) layout of flat primitive arrays, selectable at start up
 
 import java.io.*;
-import java.util.Queue;
-import java.util.LinkedList;
 import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 enum C {White, Grey, Black};
 
+/*
+ * Trace levels consulted by DF, breadthFirst, MST_Prim and SPT_Dijkstra:
+ *    OFF     - nothing is printed, no strings are built, only the result object is returned
+ *    SUMMARY - the final totals and the tree are printed
+ *    FULL    - every heap pop also prints the dist[], hPos[] and parent[] arrays,
+ *              and every DF / BFS step is printed along with the queue
+ */
+enum Trace {OFF, SUMMARY, FULL};
+
+/*
+ * Result of Prim's algorithm, returned by MST_Prim
+ */
+class MSTResult {
+    // vertex the tree was grown from
+    final int root;
+
+    // parent[v] = vertex that connects v to the MST, 0 for the root and unreached vertices
+    final int[] parent;
+
+    // total weight of the MST
+    final int weight;
+
+    // number of edges in the MST
+    final int edges;
+
+    // roots[i] and treeWeights[i] for every tree, more than one tree only in forest mode
+    final int[] roots;
+    final int[] treeWeights;
+
+    public MSTResult(int root, int[] parent, int weight, int edges) {
+        this(root, parent, weight, edges, new int[] {root}, new int[] {weight});
+    }
+
+    public MSTResult(int root, int[] parent, int weight, int edges, int[] roots, int[] treeWeights) {
+        this.root = root;
+        this.parent = parent;
+        this.weight = weight;
+        this.edges = edges;
+        this.roots = roots;
+        this.treeWeights = treeWeights;
+    }
+}
+
+/*
+ * Result of Dijkstra's algorithm, returned by SPT_Dijkstra
+ */
+class SPTResult {
+    // source vertex of the shortest path tree
+    final int source;
+
+    // dist[v] = length of the shortest path from source to v, Integer.MAX_VALUE if not reachable
+    final int[] dist;
+
+    // parent[v] = predecessor of v on the shortest path, 0 for the source and unreachable vertices
+    final int[] parent;
+
+    // number of edges in the shortest path tree
+    final int edges;
+
+    // roots[i] and the total weight of the tree edges treeWeights[i] for every tree,
+    // more than one tree only in forest mode, where dist[] is from the root of each tree
+    final int[] roots;
+    final int[] treeWeights;
+
+    public SPTResult(int source, int[] dist, int[] parent, int edges) {
+        this(source, dist, parent, edges, new int[] {source}, new int[] {0});
+    }
+
+    public SPTResult(int source, int[] dist, int[] parent, int edges, int[] roots, int[] treeWeights) {
+        this.source = source;
+        this.dist = dist;
+        this.parent = parent;
+        this.edges = edges;
+        this.roots = roots;
+        this.treeWeights = treeWeights;
+    }
+}
+
 /*
  * Implementation of Min Heap
  */
-class Heap {
+class Heap implements VertexQueue {
     // heap array
     private int[] a;	
     
@@ -48,6 +128,22 @@ class Heap {
     }
 
 
+    // priority of v was lowered, move it up from its current position
+    public void decreaseKey(int v) {
+        siftUp(hPos[v]);
+    }
+
+    // vertex with the smallest priority, without removing it
+    public int peek() {
+        return a[1];
+    }
+
+    // empty the heap so it can be reused, hPos[] is reset by the caller
+    public void clear() {
+        N = 0;
+    }
+
+
     /*
     * siftUp from position k. The node value at position k
     * may be greater than its parent at k/2
@@ -157,7 +253,544 @@ class Heap {
     }
 }
 
-class Graph {
+/*
+ * Priority queue of vertices keyed by an external priority array, as used by SPT_Dijkstra
+ * and MST_Prim. The caller lowers priority[v] first and then calls decreaseKey(v).
+ * hPos[v] != 0 exactly while v is in the queue, so the algorithms can test membership
+ * with hPos[] whichever implementation they run on (the heaps keep v's position there).
+ */
+interface VertexQueue {
+    boolean isEmpty();
+    void insert(int v);
+    int remove();
+
+    // priority[v] was lowered while v is in the queue, Heap does siftUp(hPos[v])
+    void decreaseKey(int v);
+
+    // vertex with the smallest priority, without removing it
+    int peek();
+
+    // empty the queue so it can be reused, hPos[] is reset by the caller
+    void clear();
+}
+
+/*
+ * Priority queue implementations selectable for SPT_Dijkstra and MST_Prim
+ *    BINARY  - the original binary Heap
+ *    DARY    - 4-ary heap, shallower and with the children of a node next to each other in memory
+ *    PAIRING - pairing heap with O(1) insert and decrease-key
+ *    RADIX   - radix heap for non-negative integer keys that never go below the last removed key,
+ *              true for Dijkstra but not for Prim's algorithm
+ *    BUCKET  - Dial's circular buckets, one per unit of weight of the longest edge, also monotone keys only
+ */
+enum QueueKind {
+    BINARY, DARY, PAIRING, RADIX, BUCKET;
+
+    // whether keys must never go below the last removed key, so Prim's algorithm can't use it
+    boolean monotone() {
+        return this == RADIX || this == BUCKET;
+    }
+
+    VertexQueue create(int maxSize, int[] priority, int[] hPos) {
+        return create(maxSize, priority, hPos, Integer.MAX_VALUE);
+    }
+
+    // maxWeight is the longest edge of the graph, BUCKET is a binary Heap when it's above BucketQueue.MAX_WEIGHT
+    VertexQueue create(int maxSize, int[] priority, int[] hPos, int maxWeight) {
+        switch (this) {
+            case BUCKET:
+                if (maxWeight <= BucketQueue.MAX_WEIGHT) {
+                    return new BucketQueue(maxSize, maxWeight, priority, hPos);
+                }
+                return new Heap(maxSize, priority, hPos);
+            case DARY:
+                return new DaryHeap(4, maxSize, priority, hPos);
+            case PAIRING:
+                return new PairingHeap(maxSize, priority, hPos);
+            case RADIX:
+                return new RadixHeap(maxSize, priority, hPos);
+            default:
+                return new Heap(maxSize, priority, hPos);
+        }
+    }
+}
+
+/*
+ * d-ary min heap with the same 1-based layout and hPos[] bookkeeping as Heap.
+ * The children of position k are d * (k - 1) + 2 .. d * k + 1 and its parent is (k - 2) / d + 1.
+ */
+class DaryHeap implements VertexQueue {
+    private final int d;
+    private final int[] a;
+    private final int[] hPos;
+    private final int[] dist;
+    private int N;
+
+    public DaryHeap(int d, int maxSize, int[] _dist, int[] _hPos) {
+        this.d = d;
+        a = new int[maxSize + 1];
+        hPos = _hPos;
+        dist = _dist;
+    }
+
+    public boolean isEmpty() {
+        return N == 0;
+    }
+
+    private void siftUp(int k) {
+        int v = a[k];
+        int vDist = dist[v];
+
+        while (k > 1) {
+            int p = (k - 2) / d + 1;
+            if (vDist >= dist[a[p]]) {
+                break;
+            }
+            a[k] = a[p];
+            hPos[a[k]] = k;
+            k = p;
+        }
+
+        a[k] = v;
+        hPos[v] = k;
+    }
+
+    private void siftDown(int k) {
+        int v = a[k];
+        int vDist = dist[v];
+
+        while (true) {
+            int first = d * (k - 1) + 2;
+            if (first > N) {
+                break;
+            }
+
+            // smallest of up to d children
+            int last = Math.min(first + d - 1, N);
+            int j = first;
+            for (int c = first + 1; c <= last; ++c) {
+                if (dist[a[c]] < dist[a[j]]) {
+                    j = c;
+                }
+            }
+
+            if (vDist <= dist[a[j]]) {
+                break;
+            }
+            a[k] = a[j];
+            hPos[a[k]] = k;
+            k = j;
+        }
+
+        a[k] = v;
+        hPos[v] = k;
+    }
+
+    public void insert(int x) {
+        a[++N] = x;
+        siftUp(N);
+    }
+
+    public int remove() {
+        int v = a[1];
+        hPos[v] = 0;
+
+        a[1] = a[N--];
+        if (!isEmpty()) {
+            hPos[a[1]] = 1;
+            siftDown(1);
+        }
+        return v;
+    }
+
+    public void decreaseKey(int v) {
+        siftUp(hPos[v]);
+    }
+
+    public int peek() {
+        return a[1];
+    }
+
+    public void clear() {
+        N = 0;
+    }
+}
+
+/*
+ * Pairing heap: a heap-ordered multiway tree stored in arrays indexed by vertex.
+ * child[v] is the first child of v, sibling[v] the next child of the same parent and
+ * prev[v] the previous sibling (or the parent for a first child).
+ * insert and decrease-key meld a single tree with the root in O(1), remove pairs the
+ * children of the root left to right and melds the pairs back right to left.
+ */
+class PairingHeap implements VertexQueue {
+    private final int[] child;
+    private final int[] sibling;
+    private final int[] prev;
+    private final int[] hPos;
+    private final int[] dist;
+
+    // roots of the trees being paired by remove()
+    private final int[] pairs;
+
+    private int root;
+
+    public PairingHeap(int maxSize, int[] _dist, int[] _hPos) {
+        child = new int[maxSize + 1];
+        sibling = new int[maxSize + 1];
+        prev = new int[maxSize + 1];
+        pairs = new int[maxSize + 1];
+        hPos = _hPos;
+        dist = _dist;
+    }
+
+    public boolean isEmpty() {
+        return root == 0;
+    }
+
+    // link two roots, the one with the larger priority becomes the first child of the other
+    private int meld(int x, int y) {
+        if (dist[y] < dist[x]) {
+            int t = x;
+            x = y;
+            y = t;
+        }
+
+        sibling[y] = child[x];
+        if (child[x] != 0) {
+            prev[child[x]] = y;
+        }
+        prev[y] = x;
+        child[x] = y;
+        return x;
+    }
+
+    public void insert(int v) {
+        child[v] = sibling[v] = prev[v] = 0;
+        hPos[v] = 1;
+        root = root == 0 ? v : meld(root, v);
+    }
+
+    public void decreaseKey(int v) {
+        if (v == root) {
+            return;
+        }
+
+        // cut the subtree of v out of its parent's child list and meld it with the root
+        int p = prev[v];
+        if (child[p] == v) {
+            child[p] = sibling[v];
+        } else {
+            sibling[p] = sibling[v];
+        }
+        if (sibling[v] != 0) {
+            prev[sibling[v]] = p;
+        }
+        sibling[v] = prev[v] = 0;
+
+        root = meld(root, v);
+    }
+
+    public int remove() {
+        int v = root;
+        hPos[v] = 0;
+
+        // first pass: meld the children of the root in pairs, left to right
+        int n = 0;
+        int c = child[v];
+        while (c != 0) {
+            int next = sibling[c];
+            sibling[c] = prev[c] = 0;
+
+            if (next == 0) {
+                pairs[n++] = c;
+                break;
+            }
+
+            int after = sibling[next];
+            sibling[next] = prev[next] = 0;
+            pairs[n++] = meld(c, next);
+            c = after;
+        }
+
+        // second pass: meld the pairs right to left
+        root = 0;
+        for (int i = n - 1; i >= 0; --i) {
+            root = root == 0 ? pairs[i] : meld(pairs[i], root);
+        }
+        if (root != 0) {
+            prev[root] = 0;
+        }
+
+        child[v] = 0;
+        return v;
+    }
+
+    public int peek() {
+        return root;
+    }
+
+    public void clear() {
+        root = 0;
+    }
+}
+
+/*
+ * Radix heap for non-negative integer keys that never drop below the last removed key
+ * (monotone, as in Dijkstra). Bucket 0 holds the keys equal to the last removed key and
+ * bucket i > 0 the keys whose highest bit differing from it is bit i - 1, so a key only ever
+ * moves to lower buckets and each vertex is moved at most 32 times.
+ * Buckets are doubly linked lists threaded through next[] and prev[] arrays indexed by vertex.
+ */
+class RadixHeap implements VertexQueue {
+    private static final int BUCKETS = 33;
+
+    private final int[] head = new int[BUCKETS];
+    private final int[] next;
+    private final int[] prev;
+    private final int[] bucketOf;
+    private final int[] hPos;
+    private final int[] dist;
+
+    // last removed key, all keys in the heap are >= last
+    private int last;
+    private int N;
+
+    public RadixHeap(int maxSize, int[] _dist, int[] _hPos) {
+        next = new int[maxSize + 1];
+        prev = new int[maxSize + 1];
+        bucketOf = new int[maxSize + 1];
+        hPos = _hPos;
+        dist = _dist;
+    }
+
+    public boolean isEmpty() {
+        return N == 0;
+    }
+
+    private int bucket(int key) {
+        if (key < last) {
+            throw new IllegalStateException("Radix heap key " + key + " is below the last removed key " + last);
+        }
+        return key == last ? 0 : 32 - Integer.numberOfLeadingZeros(key ^ last);
+    }
+
+    private void link(int v, int b) {
+        bucketOf[v] = b;
+        prev[v] = 0;
+        next[v] = head[b];
+        if (head[b] != 0) {
+            prev[head[b]] = v;
+        }
+        head[b] = v;
+    }
+
+    private void unlink(int v) {
+        int b = bucketOf[v];
+        if (prev[v] != 0) {
+            next[prev[v]] = next[v];
+        } else {
+            head[b] = next[v];
+        }
+        if (next[v] != 0) {
+            prev[next[v]] = prev[v];
+        }
+    }
+
+    public void insert(int v) {
+        hPos[v] = 1;
+        link(v, bucket(dist[v]));
+        ++N;
+    }
+
+    public void decreaseKey(int v) {
+        int b = bucket(dist[v]);
+        if (b != bucketOf[v]) {
+            unlink(v);
+            link(v, b);
+        }
+    }
+
+    // make sure bucket 0 is not empty: take the first non-empty bucket, its minimum becomes last
+    // and all its vertices move down to lower buckets
+    private void refill() {
+        if (head[0] != 0) {
+            return;
+        }
+
+        int b = 1;
+        while (head[b] == 0) {
+            ++b;
+        }
+
+        int min = Integer.MAX_VALUE;
+        for (int v = head[b]; v != 0; v = next[v]) {
+            min = Math.min(min, dist[v]);
+        }
+        last = min;
+
+        int v = head[b];
+        head[b] = 0;
+        while (v != 0) {
+            int n = next[v];
+            link(v, bucket(dist[v]));
+            v = n;
+        }
+    }
+
+    public int remove() {
+        refill();
+        int v = head[0];
+        unlink(v);
+        hPos[v] = 0;
+        --N;
+        return v;
+    }
+
+    public int peek() {
+        refill();
+        return head[0];
+    }
+
+    public void clear() {
+        java.util.Arrays.fill(head, 0);
+        last = 0;
+        N = 0;
+    }
+}
+
+/*
+ * Bucket queue for Dial's algorithm: integer keys that never drop below the last removed key
+ * and never exceed it by more than maxWeight, the longest edge of the graph.
+ * Then the keys in the queue fit in maxWeight + 1 circular buckets, bucket key % (maxWeight + 1),
+ * all vertices of a bucket have the same key, and remove() just walks forward to the next
+ * non-empty bucket, O(E + V * maxWeight) for the whole of Dijkstra's algorithm.
+ * Buckets are doubly linked lists threaded through next[] and prev[], hPos[v] is v's bucket + 1.
+ */
+class BucketQueue implements VertexQueue {
+    // longest edge the buckets are allocated for, heavier graphs fall back to the binary heap
+    static final int MAX_WEIGHT = 1 << 16;
+
+    private final int[] head;
+    private final int[] next;
+    private final int[] prev;
+    private final int[] hPos;
+    private final int[] dist;
+
+    // last removed key, all keys in the queue are in last .. last + head.length - 1
+    private int last;
+    private int N;
+
+    // largest key inserted since the last clear(), no bucket past it is in use
+    private int top;
+
+    public BucketQueue(int maxSize, int maxWeight, int[] _dist, int[] _hPos) {
+        head = new int[maxWeight + 1];
+        next = new int[maxSize + 1];
+        prev = new int[maxSize + 1];
+        hPos = _hPos;
+        dist = _dist;
+    }
+
+    public boolean isEmpty() {
+        return N == 0;
+    }
+
+    private int bucket(int key) {
+        if (key < last || key - last >= head.length) {
+            throw new IllegalStateException("Bucket queue key " + key + " is outside " + last + " .. " + (last + head.length - 1));
+        }
+        return key % head.length;
+    }
+
+    private void link(int v, int b) {
+        hPos[v] = b + 1;
+        prev[v] = 0;
+        next[v] = head[b];
+        if (head[b] != 0) {
+            prev[head[b]] = v;
+        }
+        head[b] = v;
+    }
+
+    private void unlink(int v) {
+        if (prev[v] != 0) {
+            next[prev[v]] = next[v];
+        } else {
+            head[hPos[v] - 1] = next[v];
+        }
+        if (next[v] != 0) {
+            prev[next[v]] = prev[v];
+        }
+    }
+
+    public void insert(int v) {
+        link(v, bucket(dist[v]));
+        top = Math.max(top, dist[v]);
+        ++N;
+    }
+
+    public void decreaseKey(int v) {
+        int b = bucket(dist[v]);
+        if (b != hPos[v] - 1) {
+            unlink(v);
+            link(v, b);
+        }
+    }
+
+    // move last forward to the key of the first non-empty bucket
+    private int advance() {
+        int b = last % head.length;
+        while (head[b] == 0) {
+            ++last;
+            b = b + 1 == head.length ? 0 : b + 1;
+        }
+        return b;
+    }
+
+    public int remove() {
+        int v = head[advance()];
+        unlink(v);
+        hPos[v] = 0;
+        --N;
+        return v;
+    }
+
+    public int peek() {
+        return head[advance()];
+    }
+
+    // empty only the buckets of keys last .. top rather than all maxWeight + 1 buckets
+    public void clear() {
+        if (N > 0) {
+            for (int key = last; key <= top; ++key) {
+                head[key % head.length] = 0;
+            }
+        }
+        last = 0;
+        top = 0;
+        N = 0;
+    }
+}
+
+/*
+ * Common interface of the graph representations, so the adjacency linked lists
+ * and the CSR arrays run the same algorithms and can be benchmarked side by side
+ */
+interface WeightedGraph {
+    void display();
+    void DF(int s);
+    int breadthFirst(int s);
+    void displayTraversalTree(int source);
+    MSTResult MST_Prim(int s);
+    void showMST();
+    SPTResult SPT_Dijkstra(int s);
+    void setTrace(Trace trace);
+    void setForest(boolean forest);
+    void setQueue(QueueKind queueKind);
+}
+
+class Graph implements WeightedGraph {
     class Node {
         public int vertex;
         public int wgt;
@@ -186,7 +819,21 @@ class Graph {
     private int[] mst;
     
     // used for traversing graph to mark vertices already visited
-    private C[] colour;
+    /*
+     * colour of every vertex in the current traversal, one byte per vertex:
+     * mark[v] - epoch is 1 for Grey and 2 for Black, anything else is White.
+     * Each traversal moves epoch on by 3 instead of whitening every vertex,
+     * mark[] is only cleared when epoch runs out of byte values
+     */
+    private byte[] mark;
+    private int epoch;
+
+    // explicit DFS stack of grey vertices, and for each of them the next adjacency list node to scan
+    private int[] stack;
+    private Node[] cursor;
+
+    // BFS queue as a flat array, each vertex is enqueued at most once
+    private int[] queue;
 
     /*
      * a global timer (or counter) used during DFS to timestamp each vertex
@@ -212,6 +859,18 @@ class Graph {
 
     // timestamps when mark node as BLACK used in DFS
     private int[] f;
+
+    // how much of MST_Prim and SPT_Dijkstra progress gets printed
+    private Trace trace = Trace.FULL;
+
+    // MST_Prim and SPT_Dijkstra grow one tree per connected component instead of only the one containing s
+    private boolean forest = false;
+
+    // priority queue of MST_Prim and SPT_Dijkstra
+    private QueueKind queueKind = QueueKind.BINARY;
+
+    // weight of the heaviest edge, the number of buckets a bucket queue needs
+    private int maxWeight;
     
     
     // default constructor
@@ -239,7 +898,10 @@ class Graph {
         for(v = 1; v <= V; ++v)
             adj[v] = z;      
         
-        colour = new C[V+1];
+        mark = new byte[V+1];
+        stack = new int[V+1];
+        cursor = new Node[V+1];
+        queue = new int[V];
         parent = new int[V+1];
         d = new int[V+1];
         f = new int[V+1];
@@ -259,6 +921,8 @@ class Graph {
             
             System.out.println("Edge " + toChar(u) + "--(" + wgt + ")--" + toChar(v));   
             
+            maxWeight = Math.max(maxWeight, wgt);
+
             // insert node in front of adjacency list for vertex u
             adj[u] = new Node(v, wgt, adj[u]);
 
@@ -270,6 +934,21 @@ class Graph {
         reader.close();
     }
    
+    // choose how much of MST_Prim and SPT_Dijkstra progress gets printed
+    public void setTrace(Trace trace) {
+        this.trace = trace;
+    }
+
+    // choose whether MST_Prim and SPT_Dijkstra span every connected component
+    public void setForest(boolean forest) {
+        this.forest = forest;
+    }
+
+    // choose the priority queue used by MST_Prim and SPT_Dijkstra
+    public void setQueue(QueueKind queueKind) {
+        this.queueKind = queueKind;
+    }
+
     // convert vertex into char for pretty printing
     private char toChar(int u) {  
         return (char)(u + 64);
@@ -288,54 +967,109 @@ class Graph {
         System.out.println("");
     }
 
+    // start a new traversal in which every vertex is White, O(1) except once every 85 traversals
+    private void whitenAll() {
+        epoch += 3;
+        if (epoch > 253) {
+            java.util.Arrays.fill(mark, (byte) 0);
+            epoch = 0;
+        }
+    }
+
+    private C colour(int v) {
+        int c = (mark[v] & 0xFF) - epoch;
+        return c == 1 ? C.Grey : c == 2 ? C.Black : C.White;
+    }
+
+    private void setColour(int v, C c) {
+        mark[v] = (byte) (epoch + c.ordinal());
+    }
+
     // method to initialise Depth First Traversal of Graph (Cormem's version)
     public void DF(int s) {
-        for (int u = 1; u <= V; ++u) {
-            colour[u] = C.White;
-            System.out.print("\nVertex " + toChar(u) + " is marked as White\n");
-            parent[u] = 0;
-            System.out.print("Parent of Vertex " + toChar(u) + " is assigned to " + parent[u] + "\n");            
+        whitenAll();
+        parent[s] = 0;
+        if (trace == Trace.FULL) {
+            for (int u = 1; u <= V; ++u) {
+                parent[u] = 0;
+                System.out.print("\nVertex " + toChar(u) + " is marked as White\n");
+                System.out.print("Parent of Vertex " + toChar(u) + " is assigned to " + parent[u] + "\n");
+            }
         }
 
-        System.out.print("\nStarting Depth First Graph Traversal Cormen's version\n");
-        System.out.println("Starting with Vertex " + toChar(s) + " prompted by user");
+        if (trace != Trace.OFF) {
+            System.out.print("\nStarting Depth First Graph Traversal Cormen's version\n");
+            System.out.println("Starting with Vertex " + toChar(s) + " prompted by user");
+        }
 
         // start from vertex s, with 0 as the "previous" node
         time = 0;
         dfVisit(s);
     }
 
-    // Recursive Depth First Traversal for adjacency lists and colouring (Cormem's version)
-    private void dfVisit(int u) {
+    /*
+     * Depth First Traversal over adjacency lists and colouring (Cormem's version), without recursion.
+     * stack[] holds the grey vertices, the same ones the recursive version has on the call stack,
+     * and cursor[u] is where the scan of u's neighbours continues once the child it went into is
+     * finished. Neighbours are visited in the same order, so d[], f[] and parent[] are identical
+     * to the recursive version, but long chains can't overflow the thread stack.
+     */
+    private void dfVisit(int s) {
+        int top = 0;
+        dfDiscover(s);
+        cursor[s] = adj[s];
+        stack[top++] = s;
+
+        while (top > 0) {
+            int u = stack[top - 1];
+
+            // skip the neighbours of u that were already discovered
+            while (cursor[u] != z && colour(cursor[u].vertex) != C.White) {
+                cursor[u] = cursor[u].next;
+            }
+
+            if (cursor[u] != z) {
+                int v = cursor[u].vertex;
+                cursor[u] = cursor[u].next;
+                parent[v] = u;
+                dfDiscover(v);
+                cursor[v] = adj[v];
+                stack[top++] = v;
+                continue;
+            }
+
+            // all neighbours of u are discovered, so u is finished
+            --top;
+            setColour(u, C.Black);
+            ++time;
+            f[u] = time;
+
+            if (trace == Trace.FULL) {
+                System.out.println("Finished vertex " + toChar(u) +
+                               " | Finish time: " + f[u] + " | Vertex " + toChar(u) + " is marked as Black");
+            }
+        }
+    }
+
+    // give u its discovery time and mark it Grey
+    private void dfDiscover(int u) {
         ++time;
         d[u] = time;
-        colour[u] = C.Grey;
+        setColour(u, C.Grey);
 
+        if (trace != Trace.FULL) {
+            return;
+        }
         if (parent[u] != 0) {
-            System.out.println("Visited vertex " + toChar(u) + " from " + toChar(parent[u]) + 
+            System.out.println("Visited vertex " + toChar(u) + " from " + toChar(parent[u]) +
                                " | Discovery time: " + d[u] + " | Vertex " + toChar(u) + " is marked as Grey");
         } else {
-            System.out.println("\nDF just visited starting vertex " + toChar(u) + 
+            System.out.println("\nDF just visited starting vertex " + toChar(u) +
                                " | Discovery time: " + d[u] + " | Vertex " + toChar(u) + " is marked as Grey");
         }
-
-        // process all the vertices u connected to vertex v
-        for (Node v = adj[u]; v != z; v = v.next) {
-            if (colour[v.vertex] == C.White) {
-                parent[v.vertex] = u;
-                dfVisit(v.vertex); 
-            }
-        }
-
-        colour[u] = C.Black;
-        ++time;
-        f[u] = time;
-
-        System.out.println("Finished vertex " + toChar(u) + 
-                       " | Finish time: " + f[u] + " | Vertex " + toChar(u) + " is marked as Black");
     }
 
-    public void breadthFirst(int s) {
+    public int breadthFirst(int s) {
         int u;
         int currQueueSize;
 
@@ -343,76 +1077,94 @@ class Graph {
         int traversalLevel = 0;
 
         // Mark all vertices as white at the beginning
-        for (u = 1; u <= V; ++u) {
-            colour[u] = C.White;
-            System.out.print("\nVertex " + toChar(u) + " is marked as White\n");
-            parent[u] = 0;
+        whitenAll();
+        if (trace == Trace.FULL) {
+            for (u = 1; u <= V; ++u) {
+                System.out.print("\nVertex " + toChar(u) + " is marked as White\n");
+                parent[u] = 0;
+            }
         }
 
         // Run BFS from source s
-        colour[s] = C.Grey;
+        setColour(s, C.Grey);
         d[s] = 0;
         parent[s] = 0;
 
-        Queue<Integer> queue = new LinkedList<>();
-        queue.add(s);
+        // flat array queue, the vertices waiting are queue[head .. tail - 1]
+        int head = 0, tail = 0;
+        queue[tail++] = s;
 
-        System.out.println("\nStarting Breadth First Traversal Cormen's version\n");
-        System.out.println("Starting with Vertex " + toChar(s) + " prompted by user");
-        displayQueue(queue);
+        if (trace != Trace.OFF) {
+            System.out.println("\nStarting Breadth First Traversal Cormen's version\n");
+            System.out.println("Starting with Vertex " + toChar(s) + " prompted by user");
+        }
+        if (trace == Trace.FULL) {
+            displayQueue(head, tail);
+        }
 
-        while (!queue.isEmpty()) {
+        while (head < tail) {
             // Get the size of the current queue to be able to count traversal levels further
-            currQueueSize = queue.size();
+            currQueueSize = tail - head;
 
-            System.out.println("Current traversal level: " + traversalLevel);
+            if (trace == Trace.FULL) {
+                System.out.println("Current traversal level: " + traversalLevel);
+            }
 
             // Examine each vertex in the queue
             for (int i = 0; i < currQueueSize; ++i) {
-                u = queue.remove();
+                u = queue[head++];
 
-                if (parent[u] != 0) {
-                    System.out.println("Visited vertex " + toChar(u) + " from " + toChar(parent[u]) + 
-                                        " | Distance from source " + toChar(s) + " to vertex " + toChar(u) + " is " + d[u] + (d[u] == 1 ? " edge" : " edges") + 
-                                        " | Vertex " + toChar(u) + " was marked as Grey");
-                } else {
-                    System.out.println("\nBF just visited starting vertex " + toChar(u) + 
-                                        " | Distance from source " + toChar(s) + " to vertex " + toChar(u) + " is " + d[u] + (d[u] == 1 ? " edge" : " edges") + 
-                                        " | Vertex " + toChar(u) + " was marked as Grey");
+                if (trace == Trace.FULL) {
+                    if (parent[u] != 0) {
+                        System.out.println("Visited vertex " + toChar(u) + " from " + toChar(parent[u]) + 
+                                            " | Distance from source " + toChar(s) + " to vertex " + toChar(u) + " is " + d[u] + (d[u] == 1 ? " edge" : " edges") + 
+                                            " | Vertex " + toChar(u) + " was marked as Grey");
+                    } else {
+                        System.out.println("\nBF just visited starting vertex " + toChar(u) + 
+                                            " | Distance from source " + toChar(s) + " to vertex " + toChar(u) + " is " + d[u] + (d[u] == 1 ? " edge" : " edges") + 
+                                            " | Vertex " + toChar(u) + " was marked as Grey");
+                    }
                 }
                 
                 // For each neighbour v of u
                 for (Node v = adj[u]; v != z; v = v.next) {
                     // If v is not visited yet, mark as Grey and enqueue to the queue
-                    if (colour[v.vertex] == C.White) {
-                        colour[v.vertex] = C.Grey;
+                    if (colour(v.vertex) == C.White) {
+                        setColour(v.vertex, C.Grey);
                         d[v.vertex] = d[u] + 1;
                         parent[v.vertex] = u;
-                        queue.add(v.vertex);
-                        System.out.println("Vertex " + toChar(v.vertex) + " is enqued to the queue | ");
-                        displayQueue(queue);
+                        queue[tail++] = v.vertex;
+                        if (trace == Trace.FULL) {
+                            System.out.println("Vertex " + toChar(v.vertex) + " is enqued to the queue | ");
+                            displayQueue(head, tail);
+                        }
                     }
                 }
 
                 // Mark u as Black since processed all adjacent neighbours
-                colour[u] = C.Black;
-                System.out.println("Vertex " + toChar(u) + " is marked as Black\n");
+                setColour(u, C.Black);
+                if (trace == Trace.FULL) {
+                    System.out.println("Vertex " + toChar(u) + " is marked as Black\n");
+                }
             }
 
             // Only move to the next level if more nodes were enqueued to the Queue
-            if (!queue.isEmpty()) {
+            if (head < tail) {
                 ++traversalLevel;
             }
         }
         
-        System.out.println("Total traversal levels in graph processed: " + traversalLevel);
+        if (trace != Trace.OFF) {
+            System.out.println("Total traversal levels in graph processed: " + traversalLevel);
+        }
+        return traversalLevel;
     }
 
     // display vertices as characters in current queue
-    private void displayQueue(Queue<Integer> queue) {
+    private void displayQueue(int head, int tail) {
         System.out.print("Queue now: [ ");
-        for (int v : queue) {
-            System.out.print(toChar(v) + " ");
+        for (int i = head; i < tail; ++i) {
+            System.out.print(toChar(queue[i]) + " ");
         }
         System.out.println("]");
     }
@@ -421,7 +1173,9 @@ class Graph {
     public void displayTraversalTree(int source) {
         System.out.println("\nTraversal Tree (parent array):");
         for (int u = 1; u <= V; ++u) {
-            if (parent[u] != 0)
+            if (colour(u) == C.White)
+                System.out.println(toChar(u) + " ← - (not reachable from source)");
+            else if (parent[u] != 0)
                 System.out.println(toChar(u) + " ← " + toChar(parent[u]));
             else if (u == source)
                 System.out.println(toChar(u) + " ← Root of tree");
@@ -431,7 +1185,7 @@ class Graph {
     }
     
 
-	public void MST_Prim(int s) {
+	public MSTResult MST_Prim(int s) {
         int v;
         int totalEdgesInMst = 0;
         int wgtSum = 0;
@@ -450,16 +1204,27 @@ class Graph {
         // Distance to root s is 0
         dist[s] = 0;
 
-        Heap h =  new Heap(V, dist, hPos);
+        // Prim's priorities are edge weights and not monotone, so the radix heap and buckets cannot be used here
+        VertexQueue h = (queueKind.monotone() ? QueueKind.BINARY : queueKind).create(V, dist, hPos);
 
         // Start from vertex s
         h.insert(s);
 
-        System.out.println("\nStarting MST Prim’s algorithm: \n");
-        System.out.println("Start from source vertex: " + toChar(s) + 
-                           ", dist = " + dist[s] +
-                           ", hPos[s] = " + hPos[s] +
-                           ", current total MST weight = " + wgtSum);
+        // roots of the trees grown so far and the weight of each, more than one tree only in forest mode
+        int[] roots = new int[V];
+        int[] treeWeights = new int[V];
+        int trees = 0;
+        int treeStart = 0;
+        int next = 1;
+        roots[trees++] = s;
+
+        if (trace == Trace.FULL) {
+            System.out.println("\nStarting MST Prim’s algorithm: \n");
+            System.out.println("Start from source vertex: " + toChar(s) + 
+                               ", dist = " + dist[s] +
+                               ", hPos[s] = " + hPos[s] +
+                               ", current total MST weight = " + wgtSum);
+        }
         
         while (!h.isEmpty()) {
 
@@ -473,13 +1238,15 @@ class Graph {
             dist[v] = -dist[v];
             
             // if we added non source vertex, increase the total number of edges constructed in MST
-            if (v != s) {
+            if (parent[v] != 0) {
                 ++totalEdgesInMst;
             }
 
-            System.out.println("Removed from heap: " + "vertex " + toChar(v) + 
-                           ", dist = " + dist[v] + " (if priority is negative, it means vertex is already in MST)" +
-                           ", current total MST weight = " + wgtSum);
+            if (trace == Trace.FULL) {
+                System.out.println("Removed from heap: " + "vertex " + toChar(v) + 
+                               ", dist = " + dist[v] + " (if priority is negative, it means vertex is already in MST)" +
+                               ", current total MST weight = " + wgtSum);
+            }
             
             // For each neighbor u of v
             for (u = adj[v]; u != z; u = u.next) {
@@ -495,35 +1262,65 @@ class Graph {
                         h.insert(u.vertex);
                     } else {
                         // if in the heap, should be sifted up since the priority was updated by new minimal weight
-                        System.out.println("Called siftUp() on vertex: " + toChar(u.vertex));
-                        h.siftUp(hPos[u.vertex]);
+                        if (trace == Trace.FULL) {
+                            System.out.println("Called decreaseKey() on vertex: " + toChar(u.vertex));
+                        }
+                        h.decreaseKey(u.vertex);
                     }
                 }
             }
 
-            System.out.print("dist[]: ");
-            for (int i = 1; i <= V; i++) System.out.print(toChar(i) + "=" + (dist[i] == Integer.MAX_VALUE ? "∞" : dist[i]) + "  ");
-            System.out.println();
+            if (trace == Trace.FULL) {
+                System.out.print("dist[]: ");
+                for (int i = 1; i <= V; i++) System.out.print(toChar(i) + "=" + (dist[i] == Integer.MAX_VALUE ? "∞" : dist[i]) + "  ");
+                System.out.println();
+
+                System.out.print("hPos[]: ");
+                for (int i = 1; i <= V; i++) System.out.print(toChar(i) + "=" + hPos[i] + "  ");
+                System.out.println();
 
-            System.out.print("hPos[]: ");
-            for (int i = 1; i <= V; i++) System.out.print(toChar(i) + "=" + hPos[i] + "  ");
-            System.out.println();
+                System.out.print("parent[]: ");
+                for (int i = 1; i <= V; i++) System.out.print(toChar(i) + "=" + toChar(parent[i]) + "  ");
+                System.out.println("\n");
+            }
 
-            System.out.print("parent[]: ");
-            for (int i = 1; i <= V; i++) System.out.print(toChar(i) + "=" + toChar(parent[i]) + "  ");
-            System.out.println("\n");
+            // forest mode: when the tree is complete, grow the next one from the lowest vertex not reached yet
+            if (forest && h.isEmpty()) {
+                while (next <= V && dist[next] != Integer.MAX_VALUE) {
+                    ++next;
+                }
+                if (next <= V) {
+                    treeWeights[trees - 1] = wgtSum - treeStart;
+                    treeStart = wgtSum;
+                    roots[trees++] = next;
+                    dist[next] = 0;
+                    h.insert(next);
+                }
+            }
         }
+        treeWeights[trees - 1] = wgtSum - treeStart;
 
         // Copy parent array to mst[] for use in showMST()
         for (v = 1; v <= V; v++) {
             mst[v] = parent[v];
         }
         
-        System.out.print("\nThere are " + V + " vertices and " + E + " edges in the input graph\n");
-        System.out.print("After running Prim’s MST Algorithm on Adjacency Lists: \n");
-        System.out.print("Weight of MST = " + wgtSum + "\n");
-        System.out.print("Number of vertices connected in MST = " + V + "\n");
-        System.out.print("Number of edges in MST = " + totalEdgesInMst + " (should be equal to V - 1)" + "\n");
+        if (trace != Trace.OFF) {
+            System.out.print("\nThere are " + V + " vertices and " + E + " edges in the input graph\n");
+            System.out.print("After running Prim’s MST Algorithm on Adjacency Lists: \n");
+            System.out.print("Weight of MST = " + wgtSum + "\n");
+            System.out.print("Number of vertices connected in MST = " + (totalEdgesInMst + trees) + "\n");
+            System.out.print("Number of edges in MST = " + totalEdgesInMst + " (equal to V - 1 when the graph is connected)" + "\n");
+            if (trees > 1) {
+                System.out.print("Minimum spanning forest of " + trees + " trees:\n");
+                for (int i = 0; i < trees; ++i) {
+                    System.out.print("Tree rooted at " + toChar(roots[i]) + ", weight = " + treeWeights[i] + "\n");
+                }
+            }
+        }
+
+        return new MSTResult(s, parent, wgtSum, totalEdgesInMst,
+                             java.util.Arrays.copyOf(roots, trees), java.util.Arrays.copyOf(treeWeights, trees));
 	}
     
     public void showMST() {
@@ -548,7 +1345,7 @@ class Graph {
     }
     
 
-    public void SPT_Dijkstra(int s) {
+    public SPTResult SPT_Dijkstra(int s) {
         int v, d;
         int totalEdgesInSpt = 0;
 
@@ -572,27 +1369,44 @@ class Graph {
         // Distance to root s is 0
         dist[s] = 0;
 
-        Heap h =  new Heap(V, dist, hPos);
+        VertexQueue h = queueKind.create(V, dist, hPos, maxWeight);
+        if (trace != Trace.OFF && queueKind == QueueKind.BUCKET && !(h instanceof BucketQueue)) {
+            System.out.println("Heaviest edge " + maxWeight + " is too heavy for a bucket queue, using the binary heap");
+        }
 
         // Start from vertex s
         h.insert(s);
 
-        System.out.println("\nStarting SPT Dijkstra's algorithm: \n");
-        System.out.println("Start from source vertex: " + toChar(s) + 
-                           ", dist = " + dist[s] + 
-                           ", hPos[s] = " + hPos[s]);
+        // roots of the trees grown so far and the weight of each, more than one tree only in forest mode
+        int[] roots = new int[V];
+        int[] treeWeights = new int[V];
+        int trees = 0;
+        int treeStart = 0;
+        int next = 1;
+        roots[trees++] = s;
+        int wgtSum = 0;
+
+        if (trace == Trace.FULL) {
+            System.out.println("\nStarting SPT Dijkstra's algorithm: \n");
+            System.out.println("Start from source vertex: " + toChar(s) + 
+                               ", dist = " + dist[s] + 
+                               ", hPos[s] = " + hPos[s]);
+        }
         
         while (!h.isEmpty()) {
 
             // pop the vertex with minimal distance from source from the heap
             v = h.remove();
 
-            if (v != s) {
+            if (parent[v] != 0) {
                 ++totalEdgesInSpt;
+                wgtSum += dist[v] - dist[parent[v]];
             }
             
-            System.out.println("Removed from heap: " + "vertex " + toChar(v) + 
-                           ", dist = " + dist[v]);
+            if (trace == Trace.FULL) {
+                System.out.println("Removed from heap: " + "vertex " + toChar(v) + 
+                               ", dist = " + dist[v]);
+            }
 
             // For each neighbor u of v
             for (u = adj[v]; u != z; u = u.next) {
@@ -606,72 +1420,1634 @@ class Graph {
                         h.insert(u.vertex);
                     } else {
                         // if in the heap, should be sifted up since the priority was updated by new minimal weight
-                        System.out.println("Called siftUp() on vertex: " + toChar(u.vertex));
-                        h.siftUp(hPos[u.vertex]);
+                        if (trace == Trace.FULL) {
+                            System.out.println("Called decreaseKey() on vertex: " + toChar(u.vertex));
+                        }
+                        h.decreaseKey(u.vertex);
                     }
                 }
             }
 
-            System.out.print("dist[]: ");
-            for (int i = 1; i <= V; i++) System.out.print(toChar(i) + "=" + (dist[i] == Integer.MAX_VALUE ? "∞" : dist[i]) + "  ");
-            System.out.println();
+            if (trace == Trace.FULL) {
+                System.out.print("dist[]: ");
+                for (int i = 1; i <= V; i++) System.out.print(toChar(i) + "=" + (dist[i] == Integer.MAX_VALUE ? "∞" : dist[i]) + "  ");
+                System.out.println();
+
+                System.out.print("hPos[]: ");
+                for (int i = 1; i <= V; i++) System.out.print(toChar(i) + "=" + hPos[i] + "  ");
+                System.out.println();
 
-            System.out.print("hPos[]: ");
-            for (int i = 1; i <= V; i++) System.out.print(toChar(i) + "=" + hPos[i] + "  ");
-            System.out.println();
+                System.out.print("parent[]: ");
+                for (int i = 1; i <= V; i++) System.out.print(toChar(i) + "=" + toChar(parent[i]) + "  ");
+                System.out.println("\n");
+            }
 
-            System.out.print("parent[]: ");
-            for (int i = 1; i <= V; i++) System.out.print(toChar(i) + "=" + toChar(parent[i]) + "  ");
-            System.out.println("\n");
+            // forest mode: when the tree is complete, grow the next one from the lowest vertex not reached yet
+            if (forest && h.isEmpty()) {
+                while (next <= V && dist[next] != Integer.MAX_VALUE) {
+                    ++next;
+                }
+                if (next <= V) {
+                    treeWeights[trees - 1] = wgtSum - treeStart;
+                    treeStart = wgtSum;
+                    roots[trees++] = next;
+                    dist[next] = 0;
+
+                    // the new root's distance 0 is below the last removed key, which monotone queues only accept after a clear
+                    h.clear();
+                    h.insert(next);
+                }
+            }
+        }
+        treeWeights[trees - 1] = wgtSum - treeStart;
+
+        if (trace != Trace.OFF) {
+            System.out.print("After running Dijkstra’s SPT Algorithm on Adjacency Lists: \n");
+            System.out.print("Number of vertices connected in SPT = " + (totalEdgesInSpt + trees) + "\n");
+            System.out.print("Number of edges in SPT = " + totalEdgesInSpt + " (equal to V - 1 when the graph is connected)" + "\n");
+            if (trees > 1) {
+                System.out.print("Shortest path forest of " + trees + " trees, distances are from the root of each tree:\n");
+                for (int i = 0; i < trees; ++i) {
+                    System.out.print("Tree rooted at " + toChar(roots[i]) + ", weight = " + treeWeights[i] + "\n");
+                }
+            }
+            System.out.println("\nShortest Path Tree as it is built is:\n");
+            System.out.printf("%-8s %-8s %-15s\n", "Vertex", "Parent", "Distance from " + toChar(s));
+
+            for (int i = 1; i <= V; i++) {
+                System.out.printf("%-8s %-8s %-15s\n", 
+                                toChar(i), 
+                                (parent[i] == 0 ? "-" : toChar(parent[i])), 
+                                (dist[i] == Integer.MAX_VALUE ? "∞" : dist[i]));
+            }
         }
 
-        System.out.print("After running Dijkstra’s SPT Algorithm on Adjacency Lists: \n");
-        System.out.print("Number of vertices connected in SPT = " + V + "\n");
-        System.out.print("Number of edges in SPT = " + totalEdgesInSpt + " (should be equal to V - 1)" + "\n");
-        System.out.println("\nShortest Path Tree as it is built is:\n");
-        System.out.printf("%-8s %-8s %-15s\n", "Vertex", "Parent", "Distance from " + toChar(s));
+        return new SPTResult(s, dist, parent, totalEdgesInSpt,
+                             java.util.Arrays.copyOf(roots, trees), java.util.Arrays.copyOf(treeWeights, trees));
+    }
+}
+
+/*
+ * Compressed Sparse Row (CSR) representation of the same undirected weighted graph.
+ * The neighbours of vertex u are targets[offsets[u]] .. targets[offsets[u + 1] - 1]
+ * with the matching edge weights in weights[], so a neighbour scan walks sequentially
+ * through three flat primitive arrays instead of chasing Node references across the heap.
+ * Each undirected edge is stored twice (u -> v and v -> u), so targets[] has 2E entries.
+ */
+class CSRGraph implements WeightedGraph {
+    // V = number of vertices
+    final int V;
+
+    // E = number of edges
+    final int E;
+
+    // offsets[u] is the index of the first neighbour of u in targets[], offsets[V + 1] == 2E
+    final int[] offsets;
+
+    // neighbour vertices of all the vertices, grouped by source vertex
+    final int[] targets;
+
+    // weights[i] is the weight of the edge to targets[i]
+    final int[] weights;
+
+    // list for representing MST
+    private int[] mst;
+
+    // used for traversing graph to mark vertices already visited
+    /*
+     * colour of every vertex in the current traversal, one byte per vertex:
+     * mark[v] - epoch is 1 for Grey and 2 for Black, anything else is White.
+     * Each traversal moves epoch on by 3 instead of whitening every vertex,
+     * mark[] is only cleared when epoch runs out of byte values
+     */
+    private byte[] mark;
+    private int epoch;
+
+    // explicit DFS stack of grey vertices, and for each of them the next index in targets[] to scan
+    private int[] stack;
+    private int[] cursor;
+
+    // BFS queue as a flat array, each vertex is enqueued at most once
+    private int[] queue;
+
+    // a global timer used during DFS to timestamp each vertex
+    private int time;
+
+    // predecessor during DFS/BFS forest (or tree) traversal
+    private int[] parent;
+
+    // In DFS: discovery time of vertex u, in BFS: number of edges from the source vertex
+    private int[] d;
+
+    // timestamps when mark node as BLACK used in DFS
+    private int[] f;
+
+    // how much of MST_Prim and SPT_Dijkstra progress gets printed
+    private Trace trace = Trace.FULL;
+
+    // MST_Prim and SPT_Dijkstra grow one tree per connected component instead of only the one containing s
+    private boolean forest = false;
+
+    // priority queue of MST_Prim and SPT_Dijkstra
+    private QueueKind queueKind = QueueKind.BINARY;
 
-        for (int i = 1; i <= V; i++) {
-            System.out.printf("%-8s %-8s %-15s\n", 
-                            toChar(i), 
-                            (parent[i] == 0 ? "-" : toChar(parent[i])), 
-                            (dist[i] == Integer.MAX_VALUE ? "∞" : dist[i]));
+    // weight of the heaviest edge, the number of buckets a bucket queue needs
+    private int maxWeight;
+
+
+    // default constructor, reads the same edge list file format as Graph
+    public CSRGraph(String graphFile) throws IOException {
+        int u, v;
+        int e, wgt;
+
+        FileReader fr = new FileReader(graphFile);
+        BufferedReader reader = new BufferedReader(fr);
+
+        String splits = " +";  // multiple whitespace as delimiter
+        String line = reader.readLine();
+        String[] parts = line.split(splits);
+        System.out.println("Parts[] = " + parts[0] + " " + parts[1]);
+
+        V = Integer.parseInt(parts[0]);
+        E = Integer.parseInt(parts[1]);
+
+        // edge list as it is read from the file, converted into CSR once all edges are known
+        int[] from = new int[E];
+        int[] to = new int[E];
+        int[] wgts = new int[E];
+
+        // read the edges
+        System.out.println("Reading edges from text file");
+        for (e = 0; e < E; ++e) {
+            line = reader.readLine();
+            parts = line.split(splits);
+            u = Integer.parseInt(parts[0]);
+            v = Integer.parseInt(parts[1]);
+            wgt = Integer.parseInt(parts[2]);
+
+            System.out.println("Edge " + toChar(u) + "--(" + wgt + ")--" + toChar(v));
+
+            from[e] = u;
+            to[e] = v;
+            wgts[e] = wgt;
+            maxWeight = Math.max(maxWeight, wgt);
         }
+        reader.close();
+
+        offsets = new int[V + 2];
+        targets = new int[2 * E];
+        weights = new int[2 * E];
+        buildRows(from, to, wgts);
+
+        mark = new byte[V + 1];
+        stack = new int[V + 1];
+        cursor = new int[V + 1];
+        queue = new int[V];
+        parent = new int[V + 1];
+        d = new int[V + 1];
+        f = new int[V + 1];
+
+        // create mst array for storing MST
+        mst = new int[V + 1];
+
+        System.out.println("\nBuilding Compressed Sparse Row representation, neighbours are stored in flat arrays.");
     }
-}
 
-public class GraphSolution {
-    public static void main(String[] args) throws IOException {
-        System.out.print("Student name: Ian Miller\n");
-        System.out.print("Student number: D23124620\n");
-        Scanner scanner = new Scanner(System.in);
+    /*
+     * Counting sort of the edge list by source vertex:
+     *    1. count the degree of every vertex
+     *    2. prefix sums of the degrees give the start of each row
+     *    3. place every edge twice (since undirected)
+     * Rows are filled from the back, so the neighbours come out in the same order
+     * as in the adjacency linked lists (most recently read edge first) and both
+     * representations produce identical traversals.
+     */
+    private void buildRows(int[] from, int[] to, int[] wgts) {
+        int u, v, e;
 
-        // Prompt for file name
-        System.out.print("\nEnter graph file name (eg. wGraph.txt): ");
-        String fname = scanner.nextLine();
+        for (e = 0; e < E; ++e) {
+            ++offsets[from[e] + 1];
+            ++offsets[to[e] + 1];
+        }
 
-        // Prompt for starting vertex
-        System.out.print("Enter starting vertex (as a number, e.g., 1 for A): ");
-        int s = scanner.nextInt();
-        
-        // Load and construct graph
-        Graph g = new Graph(fname);
-        g.display();
-       
-        System.out.print("\n1) Preparing for DFS Traversal Cormen's version with colouring\n"); 
-        g.DF(s);
-        g.displayTraversalTree(s);
-        System.out.print("\nTime complexity: O(V + E), Space complexity: O(V)\n"); 
+        for (u = 1; u <= V + 1; ++u) {
+            offsets[u] += offsets[u - 1];
+        }
 
-        System.out.print("\n2) Preparing for BFS Traversal Cormen's version with colouring\n"); 
-        g.breadthFirst(s);
-        g.displayTraversalTree(s);
-        System.out.print("\nTime complexity: O(V + E), Space complexity: O(V)\n"); 
-        
-        System.out.print("\n3) Preparing for running Prim’s MST Algorithm on Adjacency Lists\n"); 
-        g.MST_Prim(s);   
-        g.showMST();
-        System.out.print("\nTime complexity: O(E log V), Space complexity: O(V + E)\n"); 
+        // next free slot of each row, counting down from the end of the row
+        int[] pos = new int[V + 1];
+        for (u = 1; u <= V; ++u) {
+            pos[u] = offsets[u + 1];
+        }
+
+        for (e = 0; e < E; ++e) {
+            u = from[e];
+            v = to[e];
+
+            targets[--pos[u]] = v;
+            weights[pos[u]] = wgts[e];
+
+            targets[--pos[v]] = u;
+            weights[pos[v]] = wgts[e];
+        }
+    }
+
+    // choose how much of MST_Prim and SPT_Dijkstra progress gets printed
+    public void setTrace(Trace trace) {
+        this.trace = trace;
+    }
+
+    // choose whether MST_Prim and SPT_Dijkstra span every connected component
+    public void setForest(boolean forest) {
+        this.forest = forest;
+    }
+
+    // choose the priority queue used by MST_Prim and SPT_Dijkstra
+    public void setQueue(QueueKind queueKind) {
+        this.queueKind = queueKind;
+    }
+
+    // convert vertex into char for pretty printing
+    private char toChar(int u) {
+        return (char)(u + 64);
+    }
+
+    // method to display the graph representation
+    public void display() {
+        for (int v = 1; v <= V; ++v) {
+            System.out.print("\nrow[" + toChar(v) + "] ->");
+            for (int i = offsets[v]; i < offsets[v + 1]; ++i)
+                System.out.print(" |" + toChar(targets[i]) + " | " + weights[i] + "| ->");
+        }
+        System.out.println("");
+    }
+
+    // start a new traversal in which every vertex is White, O(1) except once every 85 traversals
+    private void whitenAll() {
+        epoch += 3;
+        if (epoch > 253) {
+            java.util.Arrays.fill(mark, (byte) 0);
+            epoch = 0;
+        }
+    }
+
+    private C colour(int v) {
+        int c = (mark[v] & 0xFF) - epoch;
+        return c == 1 ? C.Grey : c == 2 ? C.Black : C.White;
+    }
+
+    private void setColour(int v, C c) {
+        mark[v] = (byte) (epoch + c.ordinal());
+    }
+
+    // method to initialise Depth First Traversal of Graph (Cormem's version)
+    public void DF(int s) {
+        whitenAll();
+        parent[s] = 0;
+        if (trace == Trace.FULL) {
+            for (int u = 1; u <= V; ++u) {
+                parent[u] = 0;
+                System.out.print("\nVertex " + toChar(u) + " is marked as White\n");
+                System.out.print("Parent of Vertex " + toChar(u) + " is assigned to " + parent[u] + "\n");
+            }
+        }
+
+        if (trace != Trace.OFF) {
+            System.out.print("\nStarting Depth First Graph Traversal Cormen's version\n");
+            System.out.println("Starting with Vertex " + toChar(s) + " prompted by user");
+        }
+
+        time = 0;
+        dfVisit(s);
+    }
+
+    /*
+     * Depth First Traversal over the CSR rows and colouring (Cormem's version), without recursion.
+     * stack[] holds the grey vertices, the same ones the recursive version has on the call stack,
+     * and cursor[u] is where the scan of u's neighbours continues once the child it went into is
+     * finished. Neighbours are visited in the same order, so d[], f[] and parent[] are identical
+     * to the recursive version, but long chains can't overflow the thread stack.
+     */
+    private void dfVisit(int s) {
+        int top = 0;
+        dfDiscover(s);
+        cursor[s] = offsets[s];
+        stack[top++] = s;
+
+        while (top > 0) {
+            int u = stack[top - 1];
+
+            // skip the neighbours of u that were already discovered
+            while (cursor[u] < offsets[u + 1] && colour(targets[cursor[u]]) != C.White) {
+                ++cursor[u];
+            }
+
+            if (cursor[u] < offsets[u + 1]) {
+                int v = targets[cursor[u]++];
+                parent[v] = u;
+                dfDiscover(v);
+                cursor[v] = offsets[v];
+                stack[top++] = v;
+                continue;
+            }
+
+            // all neighbours of u are discovered, so u is finished
+            --top;
+            setColour(u, C.Black);
+            ++time;
+            f[u] = time;
+
+            if (trace == Trace.FULL) {
+                System.out.println("Finished vertex " + toChar(u) +
+                               " | Finish time: " + f[u] + " | Vertex " + toChar(u) + " is marked as Black");
+            }
+        }
+    }
+
+    // give u its discovery time and mark it Grey
+    private void dfDiscover(int u) {
+        ++time;
+        d[u] = time;
+        setColour(u, C.Grey);
+
+        if (trace != Trace.FULL) {
+            return;
+        }
+        if (parent[u] != 0) {
+            System.out.println("Visited vertex " + toChar(u) + " from " + toChar(parent[u]) +
+                               " | Discovery time: " + d[u] + " | Vertex " + toChar(u) + " is marked as Grey");
+        } else {
+            System.out.println("\nDF just visited starting vertex " + toChar(u) +
+                               " | Discovery time: " + d[u] + " | Vertex " + toChar(u) + " is marked as Grey");
+        }
+    }
+
+    public int breadthFirst(int s) {
+        int u;
+        int currQueueSize;
+
+        // start from 0 because there is 0 edges to the source vertex
+        int traversalLevel = 0;
+
+        // Mark all vertices as white at the beginning
+        whitenAll();
+        if (trace == Trace.FULL) {
+            for (u = 1; u <= V; ++u) {
+                System.out.print("\nVertex " + toChar(u) + " is marked as White\n");
+                parent[u] = 0;
+            }
+        }
+
+        // Run BFS from source s
+        setColour(s, C.Grey);
+        d[s] = 0;
+        parent[s] = 0;
+
+        // flat array queue, the vertices waiting are queue[head .. tail - 1]
+        int head = 0, tail = 0;
+        queue[tail++] = s;
+
+        if (trace != Trace.OFF) {
+            System.out.println("\nStarting Breadth First Traversal Cormen's version\n");
+            System.out.println("Starting with Vertex " + toChar(s) + " prompted by user");
+        }
+        if (trace == Trace.FULL) {
+            displayQueue(head, tail);
+        }
+
+        while (head < tail) {
+            // Get the size of the current queue to be able to count traversal levels further
+            currQueueSize = tail - head;
+
+            if (trace == Trace.FULL) {
+                System.out.println("Current traversal level: " + traversalLevel);
+            }
+
+            // Examine each vertex in the queue
+            for (int i = 0; i < currQueueSize; ++i) {
+                u = queue[head++];
+
+                if (trace == Trace.FULL) {
+                    if (parent[u] != 0) {
+                        System.out.println("Visited vertex " + toChar(u) + " from " + toChar(parent[u]) +
+                                            " | Distance from source " + toChar(s) + " to vertex " + toChar(u) + " is " + d[u] + (d[u] == 1 ? " edge" : " edges") +
+                                            " | Vertex " + toChar(u) + " was marked as Grey");
+                    } else {
+                        System.out.println("\nBF just visited starting vertex " + toChar(u) +
+                                            " | Distance from source " + toChar(s) + " to vertex " + toChar(u) + " is " + d[u] + (d[u] == 1 ? " edge" : " edges") +
+                                            " | Vertex " + toChar(u) + " was marked as Grey");
+                    }
+                }
+
+                // For each neighbour v of u
+                for (int j = offsets[u]; j < offsets[u + 1]; ++j) {
+                    int v = targets[j];
+
+                    // If v is not visited yet, mark as Grey and enqueue to the queue
+                    if (colour(v) == C.White) {
+                        setColour(v, C.Grey);
+                        d[v] = d[u] + 1;
+                        parent[v] = u;
+                        queue[tail++] = v;
+                        if (trace == Trace.FULL) {
+                            System.out.println("Vertex " + toChar(v) + " is enqued to the queue | ");
+                            displayQueue(head, tail);
+                        }
+                    }
+                }
+
+                // Mark u as Black since processed all adjacent neighbours
+                setColour(u, C.Black);
+                if (trace == Trace.FULL) {
+                    System.out.println("Vertex " + toChar(u) + " is marked as Black\n");
+                }
+            }
+
+            // Only move to the next level if more nodes were enqueued to the Queue
+            if (head < tail) {
+                ++traversalLevel;
+            }
+        }
+
+        if (trace != Trace.OFF) {
+            System.out.println("Total traversal levels in graph processed: " + traversalLevel);
+        }
+        return traversalLevel;
+    }
+
+    // display vertices as characters in current queue
+    private void displayQueue(int head, int tail) {
+        System.out.print("Queue now: [ ");
+        for (int i = head; i < tail; ++i) {
+            System.out.print(toChar(queue[i]) + " ");
+        }
+        System.out.println("]");
+    }
+
+    // display traversal tree to see from what vertex we reached current vertex
+    public void displayTraversalTree(int source) {
+        System.out.println("\nTraversal Tree (parent array):");
+        for (int u = 1; u <= V; ++u) {
+            if (colour(u) == C.White)
+                System.out.println(toChar(u) + " ← - (not reachable from source)");
+            else if (parent[u] != 0)
+                System.out.println(toChar(u) + " ← " + toChar(parent[u]));
+            else if (u == source)
+                System.out.println(toChar(u) + " ← Root of tree");
+            else
+                System.out.println(toChar(u) + " ← - (not reachable from source)");
+        }
+    }
+
+    public MSTResult MST_Prim(int s) {
+        int v, u;
+        int totalEdgesInMst = 0;
+        int wgtSum = 0;
+        int[] dist = new int[V + 1];
+        int[] parent = new int[V + 1];
+        int[] hPos = new int[V + 1];
+
+        // Initialize dist, parent, and hPos arrays (1-indexed arrays)
+        for (v = 1; v <= V; ++v) {
+            dist[v] = Integer.MAX_VALUE;
+            parent[v] = 0;
+            hPos[v] = 0;
+        }
+
+        // Distance to root s is 0
+        dist[s] = 0;
+
+        // Prim's priorities are edge weights and not monotone, so the radix heap and buckets cannot be used here
+        VertexQueue h = (queueKind.monotone() ? QueueKind.BINARY : queueKind).create(V, dist, hPos);
+
+        // Start from vertex s
+        h.insert(s);
+
+        // roots of the trees grown so far and the weight of each, more than one tree only in forest mode
+        int[] roots = new int[V];
+        int[] treeWeights = new int[V];
+        int trees = 0;
+        int treeStart = 0;
+        int next = 1;
+        roots[trees++] = s;
+
+        if (trace == Trace.FULL) {
+            System.out.println("\nStarting MST Prim’s algorithm: \n");
+            System.out.println("Start from source vertex: " + toChar(s) +
+                               ", dist = " + dist[s] +
+                               ", hPos[s] = " + hPos[s] +
+                               ", current total MST weight = " + wgtSum);
+        }
+
+        while (!h.isEmpty()) {
+
+            // pop the vertex with minimal weigth from the heap
+            v = h.remove();
+
+            // increase the weight sum by the priority of current vertex
+            wgtSum += dist[v];
+
+            // mark current vertex as presented in MST (set negative priority)
+            dist[v] = -dist[v];
+
+            // if we added non source vertex, increase the total number of edges constructed in MST
+            if (parent[v] != 0) {
+                ++totalEdgesInMst;
+            }
+
+            if (trace == Trace.FULL) {
+                System.out.println("Removed from heap: " + "vertex " + toChar(v) +
+                               ", dist = " + dist[v] + " (if priority is negative, it means vertex is already in MST)" +
+                               ", current total MST weight = " + wgtSum);
+            }
+
+            // For each neighbor u of v
+            for (int i = offsets[v]; i < offsets[v + 1]; ++i) {
+                u = targets[i];
+
+                // If not presented in MST and found an edge with weight that is smaller than current vertex's weight
+                if (dist[u] > 0 && weights[i] < dist[u]) {
+                    dist[u] = weights[i];
+                    parent[u] = v;
+
+                    // Not yet in heap
+                    if (hPos[u] == 0) {
+                        h.insert(u);
+                    } else {
+                        if (trace == Trace.FULL) {
+                            System.out.println("Called decreaseKey() on vertex: " + toChar(u));
+                        }
+                        h.decreaseKey(u);
+                    }
+                }
+            }
+
+            if (trace == Trace.FULL) {
+                System.out.print("dist[]: ");
+                for (int i = 1; i <= V; i++) System.out.print(toChar(i) + "=" + (dist[i] == Integer.MAX_VALUE ? "∞" : dist[i]) + "  ");
+                System.out.println();
+
+                System.out.print("hPos[]: ");
+                for (int i = 1; i <= V; i++) System.out.print(toChar(i) + "=" + hPos[i] + "  ");
+                System.out.println();
+
+                System.out.print("parent[]: ");
+                for (int i = 1; i <= V; i++) System.out.print(toChar(i) + "=" + toChar(parent[i]) + "  ");
+                System.out.println("\n");
+            }
+
+            // forest mode: when the tree is complete, grow the next one from the lowest vertex not reached yet
+            if (forest && h.isEmpty()) {
+                while (next <= V && dist[next] != Integer.MAX_VALUE) {
+                    ++next;
+                }
+                if (next <= V) {
+                    treeWeights[trees - 1] = wgtSum - treeStart;
+                    treeStart = wgtSum;
+                    roots[trees++] = next;
+                    dist[next] = 0;
+                    h.insert(next);
+                }
+            }
+        }
+        treeWeights[trees - 1] = wgtSum - treeStart;
+
+        // Copy parent array to mst[] for use in showMST()
+        for (v = 1; v <= V; v++) {
+            mst[v] = parent[v];
+        }
+
+        if (trace != Trace.OFF) {
+            System.out.print("\nThere are " + V + " vertices and " + E + " edges in the input graph\n");
+            System.out.print("After running Prim’s MST Algorithm on Compressed Sparse Rows: \n");
+            System.out.print("Weight of MST = " + wgtSum + "\n");
+            System.out.print("Number of vertices connected in MST = " + (totalEdgesInMst + trees) + "\n");
+            System.out.print("Number of edges in MST = " + totalEdgesInMst + " (equal to V - 1 when the graph is connected)" + "\n");
+            if (trees > 1) {
+                System.out.print("Minimum spanning forest of " + trees + " trees:\n");
+                for (int i = 0; i < trees; ++i) {
+                    System.out.print("Tree rooted at " + toChar(roots[i]) + ", weight = " + treeWeights[i] + "\n");
+                }
+            }
+        }
+
+        return new MSTResult(s, parent, wgtSum, totalEdgesInMst,
+                             java.util.Arrays.copyOf(roots, trees), java.util.Arrays.copyOf(treeWeights, trees));
+    }
+
+    // parallel Borůvka minimum spanning forest, kept in mst[] for showMST() like MST_Prim
+    public MSTResult MST_Boruvka(int s) {
+        BoruvkaMST boruvka = new BoruvkaMST(this);
+        MSTResult result = boruvka.forest(s);
+
+        for (int v = 1; v <= V; v++) {
+            mst[v] = result.parent[v];
+        }
+
+        if (trace != Trace.OFF) {
+            System.out.print("\nThere are " + V + " vertices and " + E + " edges in the input graph\n");
+            System.out.print("After running Borůvka's MST Algorithm on Compressed Sparse Rows (" + boruvka.rounds() + " rounds): \n");
+            System.out.print("Weight of minimum spanning forest = " + result.weight + "\n");
+            System.out.print("Number of trees in forest = " + (V - result.edges) + "\n");
+            System.out.print("Number of edges in forest = " + result.edges + " (equal to V - 1 when the graph is connected)" + "\n");
+        }
+
+        return result;
+    }
+
+    public void showMST() {
+        System.out.print("\nEdges in Minimum Spanning Tree (parent -> child):\n");
+
+        for (int v = 1; v <= V; ++v) {
+            int p = mst[v];
+
+            if (p != 0) {
+                // Find edge weight from p to v in the row of p
+                int weight = -1;
+                for (int i = offsets[p]; i < offsets[p + 1]; ++i) {
+                    if (targets[i] == v) {
+                        weight = weights[i];
+                        break;
+                    }
+                }
+
+                System.out.println(toChar(p) + " --(" + weight + ")--> " + toChar(v));
+            }
+        }
+    }
+
+    public SPTResult SPT_Dijkstra(int s) {
+        int v, u;
+        int totalEdgesInSpt = 0;
+
+        // Stores best known distance from s to every vertex
+        int[] dist = new int[V + 1];
+
+        // Stores the predecessor on the shortest path for each vertex
+        int[] parent = new int[V + 1];
+
+        // Position of vertex in the heap
+        int[] hPos = new int[V + 1];
+
+        // Initialize dist, parent, and hPos arrays (1-indexed arrays)
+        for (v = 1; v <= V; ++v) {
+            dist[v] = Integer.MAX_VALUE;
+            parent[v] = 0;
+            hPos[v] = 0;
+        }
+
+        // Distance to root s is 0
+        dist[s] = 0;
+
+        VertexQueue h = queueKind.create(V, dist, hPos, maxWeight);
+        if (trace != Trace.OFF && queueKind == QueueKind.BUCKET && !(h instanceof BucketQueue)) {
+            System.out.println("Heaviest edge " + maxWeight + " is too heavy for a bucket queue, using the binary heap");
+        }
+
+        // Start from vertex s
+        h.insert(s);
+
+        // roots of the trees grown so far and the weight of each, more than one tree only in forest mode
+        int[] roots = new int[V];
+        int[] treeWeights = new int[V];
+        int trees = 0;
+        int treeStart = 0;
+        int next = 1;
+        roots[trees++] = s;
+        int wgtSum = 0;
+
+        if (trace == Trace.FULL) {
+            System.out.println("\nStarting SPT Dijkstra's algorithm: \n");
+            System.out.println("Start from source vertex: " + toChar(s) +
+                               ", dist = " + dist[s] +
+                               ", hPos[s] = " + hPos[s]);
+        }
+
+        while (!h.isEmpty()) {
+
+            // pop the vertex with minimal distance from source from the heap
+            v = h.remove();
+
+            if (parent[v] != 0) {
+                ++totalEdgesInSpt;
+                wgtSum += dist[v] - dist[parent[v]];
+            }
+
+            if (trace == Trace.FULL) {
+                System.out.println("Removed from heap: " + "vertex " + toChar(v) +
+                               ", dist = " + dist[v]);
+            }
+
+            // For each neighbor u of v
+            for (int i = offsets[v]; i < offsets[v + 1]; ++i) {
+                u = targets[i];
+                if (dist[v] + weights[i] < dist[u]) {
+                    dist[u] = dist[v] + weights[i];
+                    parent[u] = v;
+
+                    // Not yet in heap
+                    if (hPos[u] == 0) {
+                        h.insert(u);
+                    } else {
+                        if (trace == Trace.FULL) {
+                            System.out.println("Called decreaseKey() on vertex: " + toChar(u));
+                        }
+                        h.decreaseKey(u);
+                    }
+                }
+            }
+
+            if (trace == Trace.FULL) {
+                System.out.print("dist[]: ");
+                for (int i = 1; i <= V; i++) System.out.print(toChar(i) + "=" + (dist[i] == Integer.MAX_VALUE ? "∞" : dist[i]) + "  ");
+                System.out.println();
+
+                System.out.print("hPos[]: ");
+                for (int i = 1; i <= V; i++) System.out.print(toChar(i) + "=" + hPos[i] + "  ");
+                System.out.println();
+
+                System.out.print("parent[]: ");
+                for (int i = 1; i <= V; i++) System.out.print(toChar(i) + "=" + toChar(parent[i]) + "  ");
+                System.out.println("\n");
+            }
+
+            // forest mode: when the tree is complete, grow the next one from the lowest vertex not reached yet
+            if (forest && h.isEmpty()) {
+                while (next <= V && dist[next] != Integer.MAX_VALUE) {
+                    ++next;
+                }
+                if (next <= V) {
+                    treeWeights[trees - 1] = wgtSum - treeStart;
+                    treeStart = wgtSum;
+                    roots[trees++] = next;
+                    dist[next] = 0;
+
+                    // the new root's distance 0 is below the last removed key, which monotone queues only accept after a clear
+                    h.clear();
+                    h.insert(next);
+                }
+            }
+        }
+        treeWeights[trees - 1] = wgtSum - treeStart;
+
+        if (trace != Trace.OFF) {
+            System.out.print("After running Dijkstra’s SPT Algorithm on Compressed Sparse Rows: \n");
+            System.out.print("Number of vertices connected in SPT = " + (totalEdgesInSpt + trees) + "\n");
+            System.out.print("Number of edges in SPT = " + totalEdgesInSpt + " (equal to V - 1 when the graph is connected)" + "\n");
+            if (trees > 1) {
+                System.out.print("Shortest path forest of " + trees + " trees, distances are from the root of each tree:\n");
+                for (int i = 0; i < trees; ++i) {
+                    System.out.print("Tree rooted at " + toChar(roots[i]) + ", weight = " + treeWeights[i] + "\n");
+                }
+            }
+            System.out.println("\nShortest Path Tree as it is built is:\n");
+            System.out.printf("%-8s %-8s %-15s\n", "Vertex", "Parent", "Distance from " + toChar(s));
+
+            for (int i = 1; i <= V; i++) {
+                System.out.printf("%-8s %-8s %-15s\n",
+                                toChar(i),
+                                (parent[i] == 0 ? "-" : toChar(parent[i])),
+                                (dist[i] == Integer.MAX_VALUE ? "∞" : dist[i]));
+            }
+        }
+
+        return new SPTResult(s, dist, parent, totalEdgesInSpt,
+                             java.util.Arrays.copyOf(roots, trees), java.util.Arrays.copyOf(treeWeights, trees));
+    }
+}
+
+/*
+ * Breadth first search over the CSR arrays for large graphs, returning hop distances.
+ * Top-down steps scan the edges of the frontier, kept as a slice of a flat int queue.
+ * In direction-optimising mode (Beamer et al.) the search switches to bottom-up steps while the
+ * frontier is large: every unvisited vertex looks for any neighbour in the frontier and stops at
+ * the first one, which checks far fewer edges on low-diameter graphs. The frontier and the
+ * visited set are then bitsets, one bit per vertex.
+ * runParallel expands every top-down level across a ForkJoinPool instead: threads claim vertices
+ * by setting their bit in an atomic visited bitset, collect them in a next-frontier of their own,
+ * and the next-frontiers are appended to the queue at the end of the level.
+ * Hop distances and the level count are the same in every mode, parent[] may differ since
+ * bottom-up steps and parallel levels don't always keep the first discoverer.
+ */
+class BFSEngine {
+    // frontier vertices expanded by one task of a parallel level before it stops splitting
+    private static final int GRAIN = 1024;
+
+    // go bottom-up when the frontier has more than 1/ALPHA of the unexplored edges,
+    // back top-down when it has fewer than 1/BETA of the vertices
+    private static final int ALPHA = 14;
+    private static final int BETA = 24;
+
+    private final CSRGraph g;
+
+    // hops[v] = number of edges from the source to v, -1 if not reachable
+    private final int[] hops;
+    private final int[] parent;
+
+    // top-down frontier is queue[head .. tail - 1]
+    private final int[] queue;
+
+    // bottom-up frontier, the next one, and the visited vertices as bitsets
+    private long[] frontier;
+    private long[] next;
+    private final long[] visited;
+
+    // edges out of the current frontier
+    private long frontierEdges;
+
+    // levels of the last search, and how many of those levels were found bottom-up
+    private int levels;
+    private int bottomUpSteps;
+
+    // parallel search: visited bitset shared by the threads, and the vertices found by each task
+    private AtomicLongArray claimed;
+    private int[][] found = new int[0][];
+    private int[] foundCount = new int[0];
+
+    public BFSEngine(CSRGraph g) {
+        this.g = g;
+        hops = new int[g.V + 1];
+        parent = new int[g.V + 1];
+        queue = new int[g.V];
+        int words = (g.V >> 6) + 1;
+        frontier = new long[words];
+        next = new long[words];
+        visited = new long[words];
+    }
+
+    // search from s, returns the number of traversal levels as printed by breadthFirst
+    public int run(int s, boolean directionOptimizing) {
+        int V = g.V;
+        java.util.Arrays.fill(hops, -1);
+        java.util.Arrays.fill(parent, 0);
+        java.util.Arrays.fill(visited, 0);
+
+        // bit 0 and the bits past V are no vertex, marked visited so bottom-up steps skip them
+        visited[0] |= 1L;
+        for (int v = V + 1; v < visited.length << 6; ++v) {
+            visited[v >> 6] |= 1L << v;
+        }
+
+        hops[s] = 0;
+        visited[s >> 6] |= 1L << s;
+        int head = 0, tail = 0;
+        queue[tail++] = s;
+
+        long unexploredEdges = g.offsets[V + 1] - degree(s);
+        frontierEdges = degree(s);
+        int frontierSize = 1;
+        boolean bottomUp = false;
+        levels = 0;
+        bottomUpSteps = 0;
+
+        while (true) {
+            if (directionOptimizing && !bottomUp && frontierEdges > unexploredEdges / ALPHA) {
+                java.util.Arrays.fill(frontier, 0);
+                for (int i = head; i < tail; ++i) {
+                    frontier[queue[i] >> 6] |= 1L << queue[i];
+                }
+                bottomUp = true;
+            } else if (bottomUp && frontierSize < V / BETA) {
+                head = tail = 0;
+                for (int w = 0; w < frontier.length; ++w) {
+                    for (long bits = frontier[w]; bits != 0; bits &= bits - 1) {
+                        queue[tail++] = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    }
+                }
+                bottomUp = false;
+            }
+
+            // every step returns the size of the next frontier and sets frontierEdges to its edges
+            if (bottomUp) {
+                frontierSize = bottomUpStep(levels);
+
+                // the last step finds nothing and is not a level
+                if (frontierSize > 0) {
+                    ++bottomUpSteps;
+                }
+            } else {
+                int end = tail;
+                frontierEdges = 0;
+                for (; head < end; ++head) {
+                    int u = queue[head];
+                    for (int i = g.offsets[u]; i < g.offsets[u + 1]; ++i) {
+                        int v = g.targets[i];
+                        if ((visited[v >> 6] & (1L << v)) == 0) {
+                            visited[v >> 6] |= 1L << v;
+                            hops[v] = levels + 1;
+                            parent[v] = u;
+                            queue[tail++] = v;
+                            frontierEdges += degree(v);
+                        }
+                    }
+                }
+                frontierSize = tail - head;
+            }
+
+            if (frontierSize == 0) {
+                break;
+            }
+            unexploredEdges -= frontierEdges;
+            ++levels;
+        }
+        return levels;
+    }
+
+    // level-synchronous search from s with each level split across pool, returns the number of levels
+    public int runParallel(int s, ForkJoinPool pool) {
+        java.util.Arrays.fill(hops, -1);
+        java.util.Arrays.fill(parent, 0);
+        if (claimed == null) {
+            claimed = new AtomicLongArray(visited.length);
+        } else {
+            for (int w = 0; w < visited.length; ++w) {
+                claimed.set(w, 0);
+            }
+        }
+
+        hops[s] = 0;
+        claimed.set(s >> 6, 1L << s);
+        int head = 0, tail = 0;
+        queue[tail++] = s;
+        levels = 0;
+        bottomUpSteps = 0;
+
+        while (true) {
+            int n = tail - head;
+            int tasks = (n + GRAIN - 1) / GRAIN;
+            if (tasks > found.length) {
+                found = java.util.Arrays.copyOf(found, tasks);
+                foundCount = new int[tasks];
+            }
+            for (int t = 0; t < tasks; ++t) {
+                if (found[t] == null) {
+                    found[t] = new int[GRAIN];
+                }
+            }
+
+            // a single task is run right here instead of going through the pool
+            Expand level = new Expand(head, n, levels + 1, 0, tasks);
+            if (tasks == 1) {
+                level.compute();
+            } else {
+                pool.invoke(level);
+            }
+
+            // level barrier: the next-frontiers of all tasks become the next slice of the queue
+            head = tail;
+            for (int t = 0; t < tasks; ++t) {
+                System.arraycopy(found[t], 0, queue, tail, foundCount[t]);
+                tail += foundCount[t];
+            }
+
+            if (head == tail) {
+                break;
+            }
+            ++levels;
+        }
+        return levels;
+    }
+
+    // expands the frontier queue[first .. first + n - 1] for the tasks lo .. hi - 1, GRAIN vertices each
+    private final class Expand extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int first, n, hop;
+        private final int lo, hi;
+
+        Expand(int first, int n, int hop, int lo, int hi) {
+            this.first = first;
+            this.n = n;
+            this.hop = hop;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Expand(first, n, hop, lo, mid), new Expand(first, n, hop, mid, hi));
+                return;
+            }
+
+            int[] out = found[lo];
+            int count = 0;
+            for (int k = first + lo * GRAIN; k < first + Math.min(n, (lo + 1) * GRAIN); ++k) {
+                int u = queue[k];
+                for (int i = g.offsets[u]; i < g.offsets[u + 1]; ++i) {
+                    int v = g.targets[i];
+                    long bit = 1L << v;
+
+                    // cheap check first, the compareAndSet decides which thread gets v
+                    long word = claimed.get(v >> 6);
+                    while ((word & bit) == 0) {
+                        if (claimed.compareAndSet(v >> 6, word, word | bit)) {
+                            hops[v] = hop;
+                            parent[v] = u;
+                            if (count == out.length) {
+                                out = java.util.Arrays.copyOf(out, 2 * out.length);
+                            }
+                            out[count++] = v;
+                            break;
+                        }
+                        word = claimed.get(v >> 6);
+                    }
+                }
+            }
+            found[lo] = out;
+            foundCount[lo] = count;
+        }
+    }
+
+    // one bottom-up step: every unvisited vertex with a neighbour in frontier joins next
+    private int bottomUpStep(int level) {
+        java.util.Arrays.fill(next, 0);
+        long edges = 0;
+        int found = 0;
+
+        for (int w = 0; w < visited.length; ++w) {
+            for (long bits = ~visited[w]; bits != 0; bits &= bits - 1) {
+                int v = (w << 6) + Long.numberOfTrailingZeros(bits);
+                for (int i = g.offsets[v]; i < g.offsets[v + 1]; ++i) {
+                    int u = g.targets[i];
+                    if ((frontier[u >> 6] & (1L << u)) != 0) {
+                        hops[v] = level + 1;
+                        parent[v] = u;
+                        next[w] |= 1L << v;
+                        edges += degree(v);
+                        ++found;
+                        break;
+                    }
+                }
+            }
+            visited[w] |= next[w];
+        }
+
+        long[] t = frontier;
+        frontier = next;
+        next = t;
+        frontierEdges = edges;
+        return found;
+    }
+
+    private int degree(int v) {
+        return g.offsets[v + 1] - g.offsets[v];
+    }
+
+    // hops[v] = number of edges from the source of the last search to v, -1 if not reachable
+    public int[] hops() {
+        return hops;
+    }
+
+    public int[] parent() {
+        return parent;
+    }
+
+    public int bottomUpSteps() {
+        return bottomUpSteps;
+    }
+}
+
+/*
+ * Parallel Borůvka minimum spanning forest over the CSR arrays.
+ * Every round each component picks its lightest edge to another component, the chosen edges
+ * join the forest and their components are merged with union-find, until no edge is left
+ * between two components. At least half the components disappear per round, so there are
+ * at most log V rounds.
+ * The two O(E) steps of a round run on a ForkJoinPool: relabelling the vertices with their
+ * component and scanning the edges, where each task drops the edges that became internal to
+ * a component from its own block of the edge list and CAS-mins the others into best[].
+ * Ties are broken by edge index, so the chosen edges never form a cycle.
+ */
+class BoruvkaMST {
+    // edges (or vertices) handled by one task before it stops splitting
+    private static final int GRAIN = 4096;
+
+    private final CSRGraph g;
+    private final ForkJoinPool pool;
+
+    // each undirected edge once: eu[e] < ev[e], with its weight ew[e]
+    private final int[] eu, ev, ew;
+
+    // block b of the edge list starts at b * GRAIN and its live edges are live[b * GRAIN .. + liveCount[b] - 1]
+    private int[] live;
+    private int[] liveCount;
+
+    // union-find over the vertices, and comp[v] = root of v for the current round
+    private int[] uf;
+    private int[] comp;
+
+    // best[c] = weight << 32 | edge index of the lightest edge leaving component c
+    private AtomicLongArray best;
+
+    // number of rounds of the last run
+    private int rounds;
+
+    public BoruvkaMST(CSRGraph g) {
+        this(g, ForkJoinPool.commonPool());
+    }
+
+    public BoruvkaMST(CSRGraph g, ForkJoinPool pool) {
+        this.g = g;
+        this.pool = pool;
+
+        int m = 0;
+        for (int u = 1; u <= g.V; ++u) {
+            for (int i = g.offsets[u]; i < g.offsets[u + 1]; ++i) {
+                if (u < g.targets[i]) {
+                    ++m;
+                }
+            }
+        }
+
+        eu = new int[m];
+        ev = new int[m];
+        ew = new int[m];
+        m = 0;
+        for (int u = 1; u <= g.V; ++u) {
+            for (int i = g.offsets[u]; i < g.offsets[u + 1]; ++i) {
+                if (u < g.targets[i]) {
+                    eu[m] = u;
+                    ev[m] = g.targets[i];
+                    ew[m++] = g.weights[i];
+                }
+            }
+        }
+    }
+
+    public int rounds() {
+        return rounds;
+    }
+
+    /*
+     * Minimum spanning forest in the parent array form of MST_Prim: the tree containing s is
+     * rooted at s, every other tree at its lowest numbered vertex, parent[root] == 0
+     */
+    public MSTResult forest(int s) {
+        int V = g.V;
+        int m = eu.length;
+        int blocks = (m + GRAIN - 1) / GRAIN;
+
+        live = new int[m];
+        liveCount = new int[blocks];
+        for (int e = 0; e < m; ++e) {
+            live[e] = e;
+        }
+        for (int b = 0; b < blocks; ++b) {
+            liveCount[b] = Math.min(GRAIN, m - b * GRAIN);
+        }
+
+        uf = new int[V + 1];
+        comp = new int[V + 1];
+        best = new AtomicLongArray(V + 1);
+        for (int v = 1; v <= V; ++v) {
+            uf[v] = v;
+        }
+
+        // forest edges, and how many of them
+        int[] chosen = new int[Math.max(0, V - 1)];
+        int n = 0;
+
+        rounds = 0;
+        while (true) {
+            pool.invoke(new Relabel(1, V + 1));
+            System.arraycopy(comp, 0, uf, 0, V + 1);
+            if (blocks > 0) {
+                pool.invoke(new Scan(0, blocks));
+            }
+
+            // every component with an edge to another one takes it
+            int merged = 0;
+            for (int c = 1; c <= V; ++c) {
+                long x = best.get(c);
+                if (comp[c] != c || x == Long.MAX_VALUE) {
+                    continue;
+                }
+                int e = (int) x;
+                int a = find(eu[e]), b = find(ev[e]);
+                if (a != b) {
+                    uf[a] = b;
+                    chosen[n++] = e;
+                    ++merged;
+                }
+            }
+
+            if (merged == 0) {
+                break;
+            }
+            ++rounds;
+        }
+
+        return toParents(s, chosen, n);
+    }
+
+    // root of v with path halving, only called between the parallel steps
+    private int find(int v) {
+        while (uf[v] != v) {
+            uf[v] = uf[uf[v]];
+            v = uf[v];
+        }
+        return v;
+    }
+
+    // root the forest edges: s first, then every vertex not reached yet, in order
+    private MSTResult toParents(int s, int[] chosen, int n) {
+        int V = g.V;
+        int[] start = new int[V + 2];
+        int[] adj = new int[2 * n];
+        for (int k = 0; k < n; ++k) {
+            ++start[eu[chosen[k]] + 1];
+            ++start[ev[chosen[k]] + 1];
+        }
+        for (int v = 1; v <= V + 1; ++v) {
+            start[v] += start[v - 1];
+        }
+        int[] pos = java.util.Arrays.copyOf(start, V + 1);
+        for (int k = 0; k < n; ++k) {
+            int e = chosen[k];
+            adj[pos[eu[e]]++] = e;
+            adj[pos[ev[e]]++] = e;
+        }
+
+        int[] parent = new int[V + 1];
+        boolean[] seen = new boolean[V + 1];
+        int[] stack = new int[V];
+        int[] roots = new int[V];
+        int[] treeWeights = new int[V];
+        int trees = 0;
+        int weight = 0;
+        for (int r = 0; r <= V; ++r) {
+            int root = r == 0 ? s : r;
+            if (seen[root]) {
+                continue;
+            }
+            seen[root] = true;
+            roots[trees] = root;
+            int treeStart = weight;
+            int top = 0;
+            stack[top++] = root;
+            while (top > 0) {
+                int u = stack[--top];
+                for (int k = start[u]; k < start[u + 1]; ++k) {
+                    int e = adj[k];
+                    int v = eu[e] == u ? ev[e] : eu[e];
+                    if (!seen[v]) {
+                        seen[v] = true;
+                        parent[v] = u;
+                        weight += ew[e];
+                        stack[top++] = v;
+                    }
+                }
+            }
+            treeWeights[trees++] = weight - treeStart;
+        }
+
+        return new MSTResult(s, parent, weight, n, java.util.Arrays.copyOf(roots, trees), java.util.Arrays.copyOf(treeWeights, trees));
+    }
+
+    // comp[v] = find(v) for the vertices lo .. hi - 1, reading uf[] only
+    private final class Relabel extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int lo, hi;
+
+        Relabel(int lo, int hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > GRAIN) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Relabel(lo, mid), new Relabel(mid, hi));
+                return;
+            }
+
+            for (int v = lo; v < hi; ++v) {
+                int r = v;
+                while (uf[r] != r) {
+                    r = uf[r];
+                }
+                comp[v] = r;
+                best.set(v, Long.MAX_VALUE);
+            }
+        }
+    }
+
+    // lightest outgoing edge of every component, over the edge blocks lo .. hi - 1
+    private final class Scan extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int lo, hi;
+
+        Scan(int lo, int hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Scan(lo, mid), new Scan(mid, hi));
+                return;
+            }
+
+            int first = lo * GRAIN;
+            int kept = 0;
+            for (int k = first; k < first + liveCount[lo]; ++k) {
+                int e = live[k];
+                int a = comp[eu[e]], b = comp[ev[e]];
+
+                // both ends in one component, the edge can never be chosen again
+                if (a == b) {
+                    continue;
+                }
+                live[first + kept++] = e;
+
+                long x = (long) ew[e] << 32 | e;
+                minimize(a, x);
+                minimize(b, x);
+            }
+            liveCount[lo] = kept;
+        }
+
+        private void minimize(int c, long x) {
+            long old = best.get(c);
+            while (x < old && !best.compareAndSet(c, old, x)) {
+                old = best.get(c);
+            }
+        }
+    }
+}
+
+/*
+ * Benchmark suite for graph loading, DF, breadthFirst, MST_Prim and SPT_Dijkstra on both
+ * representations, over wGraph.txt, gibraltar.txt and synthetic road grids of increasing size.
+ * Every benchmark is warmed up first, then timed per call over several measurement iterations,
+ * reporting throughput, latency percentiles and the bytes allocated per call (the same figure
+ * JMH's GC profiler gives, read from the thread allocation counter) plus GC runs.
+ * All traversals run at Trace.OFF, and the per-edge lines printed while loading go to a null
+ * stream, so no console output is timed.
+ * Run with: java GraphBenchmark [--warmup=<iterations>] [--iterations=<n>] [--time=<ms per iteration>] [graph files]
+ */
+class GraphBenchmark {
+    private static int warmup = 3;
+    private static int iterations = 5;
+    private static long iterationMillis = 500;
+
+    // results are stored here so the JIT can't drop the calls
+    static volatile Object sink;
+
+    interface Op {
+        Object run() throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        java.util.List<String> files = new java.util.ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--warmup=")) {
+                warmup = Integer.parseInt(arg.substring("--warmup=".length()));
+            } else if (arg.startsWith("--iterations=")) {
+                iterations = Integer.parseInt(arg.substring("--iterations=".length()));
+            } else if (arg.startsWith("--time=")) {
+                iterationMillis = Long.parseLong(arg.substring("--time=".length()));
+            } else {
+                files.add(arg);
+            }
+        }
+        if (files.isEmpty()) {
+            files.add("wGraph.txt");
+            files.add("gibraltar.txt");
+            for (int side : new int[] {32, 100, 316}) {
+                files.add(syntheticGrid(side));
+            }
+        }
+
+        System.out.printf("%-22s %-7s %-14s %12s %10s %10s %10s %10s %12s %5s\n",
+                          "graph", "layout", "benchmark", "ops/s", "p50 us", "p90 us", "p99 us", "max us", "bytes/op", "gcs");
+
+        for (String file : files) {
+            for (boolean linked : new boolean[] {true, false}) {
+                String name = new File(file).getName();
+                String layout = linked ? "linked" : "csr";
+
+                run(name, layout, "load", () -> load(file, linked));
+
+                WeightedGraph g = load(file, linked);
+                g.setTrace(Trace.OFF);
+                run(name, layout, "DF", () -> { g.DF(1); return g; });
+                run(name, layout, "breadthFirst", () -> g.breadthFirst(1));
+                run(name, layout, "MST_Prim", () -> g.MST_Prim(1));
+                run(name, layout, "SPT_Dijkstra", () -> g.SPT_Dijkstra(1));
+            }
+        }
+    }
+
+    // load a graph with the per-edge lines printed by the constructors thrown away
+    private static WeightedGraph load(String file, boolean linked) throws IOException {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            return linked ? new Graph(file) : new CSRGraph(file);
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    // side x side grid of roads with random lengths, written to a temporary edge list file
+    private static String syntheticGrid(int side) throws IOException {
+        java.util.Random random = new java.util.Random(side);
+        File dir = java.nio.file.Files.createTempDirectory("graphbench").toFile();
+        File file = new File(dir, "grid" + side * side + ".txt");
+        dir.deleteOnExit();
+        file.deleteOnExit();
+
+        try (PrintWriter w = new PrintWriter(new BufferedWriter(new FileWriter(file)))) {
+            w.println(side * side + " " + 2 * side * (side - 1));
+            for (int r = 0; r < side; ++r) {
+                for (int c = 0; c < side; ++c) {
+                    int v = r * side + c + 1;
+                    if (c + 1 < side) {
+                        w.println(v + " " + (v + 1) + " " + (1 + random.nextInt(500)));
+                    }
+                    if (r + 1 < side) {
+                        w.println(v + " " + (v + side) + " " + (1 + random.nextInt(500)));
+                    }
+                }
+            }
+        }
+        return file.getPath();
+    }
+
+    private static void run(String graph, String layout, String benchmark, Op op) throws IOException {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+
+        for (int i = 0; i < warmup; ++i) {
+            iteration(op, new long[1024]);
+        }
+
+        long[] samples = new long[1024];
+        int n = 0;
+        long totalNanos = 0;
+        long gcs = gcCount();
+        long allocated = threads.getCurrentThreadAllocatedBytes();
+
+        for (int i = 0; i < iterations; ++i) {
+            long startTime = System.nanoTime();
+            long[] times = iteration(op, new long[1024]);
+            totalNanos += System.nanoTime() - startTime;
+
+            int count = (int) times[0];
+            if (n + count > samples.length) {
+                samples = java.util.Arrays.copyOf(samples, Math.max(2 * samples.length, n + count));
+            }
+            System.arraycopy(times, 1, samples, n, count);
+            n += count;
+        }
+
+        // the samples arrays themselves are counted too, a few bytes per call at most
+        double bytesPerOp = (double) (threads.getCurrentThreadAllocatedBytes() - allocated) / n;
+        gcs = gcCount() - gcs;
+
+        java.util.Arrays.sort(samples, 0, n);
+        System.out.printf("%-22s %-7s %-14s %12.1f %10.1f %10.1f %10.1f %10.1f %12.0f %5d\n",
+                          graph, layout, benchmark, n / (totalNanos / 1e9),
+                          percentile(samples, n, 50), percentile(samples, n, 90), percentile(samples, n, 99),
+                          samples[n - 1] / 1e3, bytesPerOp, gcs);
+    }
+
+    // calls op until iterationMillis have passed, times[0] = number of calls, times[1..] = nanoseconds per call
+    private static long[] iteration(Op op, long[] times) throws IOException {
+        long end = System.nanoTime() + iterationMillis * 1_000_000;
+        int n = 0;
+        do {
+            long startTime = System.nanoTime();
+            sink = op.run();
+            long t = System.nanoTime() - startTime;
+
+            if (n + 2 > times.length) {
+                times = java.util.Arrays.copyOf(times, 2 * times.length);
+            }
+            times[++n] = t;
+        } while (System.nanoTime() < end);
+        times[0] = n;
+        return times;
+    }
+
+    // p-th percentile of the sorted samples, in microseconds
+    private static double percentile(long[] sorted, int n, int p) {
+        return sorted[Math.min(n - 1, (int) Math.ceil(p / 100.0 * n) - 1)] / 1e3;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (java.lang.management.GarbageCollectorMXBean gc : java.lang.management.ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+}
+
+
+public class GraphSolution {
+    public static void main(String[] args) throws IOException {
+        System.out.print("Student name: Ian Miller\n");
+        System.out.print("Student number: D23124620\n");
+        Scanner scanner = new Scanner(System.in);
+
+        // Prompt for file name
+        System.out.print("\nEnter graph file name (eg. wGraph.txt): ");
+        String fname = scanner.nextLine();
+
+        // Prompt for starting vertex
+        System.out.print("Enter starting vertex (as a number, e.g., 1 for A): ");
+        int s = scanner.nextInt();
+        
+        // Options: --linked for adjacency linked lists instead of CSR arrays,
+        // --trace=off|summary|full for how much of MST_Prim and SPT_Dijkstra gets printed,
+        // --forest to span every connected component instead of only the one containing the starting vertex,
+        // --queue=binary|dary|pairing|radix|bucket for the priority queue of MST_Prim and SPT_Dijkstra
+        boolean linked = false;
+        boolean forest = false;
+        QueueKind queueKind = QueueKind.BINARY;
+        Trace trace = Trace.FULL;
+        for (String arg : args) {
+            if (arg.equals("--linked")) {
+                linked = true;
+            } else if (arg.startsWith("--trace=")) {
+                trace = Trace.valueOf(arg.substring("--trace=".length()).toUpperCase());
+            } else if (arg.equals("--forest")) {
+                forest = true;
+            } else if (arg.startsWith("--queue=")) {
+                queueKind = QueueKind.valueOf(arg.substring("--queue=".length()).toUpperCase());
+            }
+        }
+
+        // Load and construct graph
+        WeightedGraph g;
+        if (linked) {
+            g = new Graph(fname);
+        } else {
+            g = new CSRGraph(fname);
+        }
+        g.setTrace(trace);
+        g.setForest(forest);
+        g.setQueue(queueKind);
+        g.display();
+       
+        System.out.print("\n1) Preparing for DFS Traversal Cormen's version with colouring\n"); 
+        g.DF(s);
+        g.displayTraversalTree(s);
+        System.out.print("\nTime complexity: O(V + E), Space complexity: O(V)\n"); 
+
+        System.out.print("\n2) Preparing for BFS Traversal Cormen's version with colouring\n"); 
+        int levels = g.breadthFirst(s);
+        g.displayTraversalTree(s);
+        System.out.print("\nTime complexity: O(V + E), Space complexity: O(V)\n"); 
+
+        if (g instanceof CSRGraph) {
+            System.out.print("\n2b) Preparing for direction-optimising BFS on Compressed Sparse Rows\n"); 
+            BFSEngine bfs = new BFSEngine((CSRGraph) g);
+            long startTime = System.nanoTime();
+            int hybridLevels = bfs.run(s, true);
+            double timeInMillis = (System.nanoTime() - startTime) / 1_000_000.0;
+            if (hybridLevels != levels) {
+                throw new IllegalStateException("Direction-optimising BFS found " + hybridLevels + " levels instead of " + levels);
+            }
+            System.out.printf("Total traversal levels: %d, %d of them bottom-up, in %.3f ms\n", hybridLevels, bfs.bottomUpSteps(), timeInMillis);
+
+            // same hop distances from the parallel level-synchronous search
+            int[] hops = bfs.hops().clone();
+            startTime = System.nanoTime();
+            int parallelLevels = bfs.runParallel(s, ForkJoinPool.commonPool());
+            timeInMillis = (System.nanoTime() - startTime) / 1_000_000.0;
+            if (parallelLevels != levels || !java.util.Arrays.equals(hops, bfs.hops())) {
+                throw new IllegalStateException("Parallel BFS hop distances differ from the sequential ones");
+            }
+            System.out.printf("Parallel level-synchronous BFS: %d levels on %d threads in %.3f ms\n",
+                              parallelLevels, ForkJoinPool.commonPool().getParallelism(), timeInMillis);
+        }
+        
+        System.out.print("\n3) Preparing for running Prim’s MST Algorithm on Adjacency Lists\n"); 
+        MSTResult prim = g.MST_Prim(s);   
+        g.showMST();
+        System.out.print("\nTime complexity: O(E log V), Space complexity: O(V + E)\n"); 
+
+        if (g instanceof CSRGraph) {
+            System.out.print("\n3b) Preparing for running parallel Borůvka's MST Algorithm on Compressed Sparse Rows\n"); 
+            MSTResult boruvka = ((CSRGraph) g).MST_Boruvka(s);
+            g.showMST();
+
+            // both span the same vertices on a connected graph or in forest mode, and all minimum spanning trees weigh the same
+            if (boruvka.edges == prim.edges && boruvka.weight != prim.weight) {
+                throw new IllegalStateException("Borůvka MST weight " + boruvka.weight + " differs from Prim's " + prim.weight);
+            }
+            System.out.print("\nTime complexity: O(E log V) work in at most log V parallel rounds, Space complexity: O(V + E)\n"); 
+        }
 
         System.out.print("\n4) Preparing for running Dijkstra's Shortest Path Tree Algorithm on Adjacency Lists\n"); 
         g.SPT_Dijkstra(s);  